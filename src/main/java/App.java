@@ -1,10 +1,15 @@
+import importer.ImportReport;
+import importer.UserCsvImporter;
 import lombok.extern.slf4j.Slf4j;
 import models.User;
+import models.UserPatch;
 import services.UserService;
 import utils.HibernateSessionFactoryUtil;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 @Slf4j
 public class App {
@@ -40,6 +45,7 @@ public class App {
             System.out.println("5 -  Удалить пользователя.");
             System.out.println("6 -  Показать всех пользователей.");
             System.out.println("7 -  Показать общее количество пользователей.");
+            System.out.println("8 -  Импортировать пользователей из CSV.");
             System.out.println("0 -  Выход.");
             System.out.println("=====================================================");
 
@@ -53,6 +59,7 @@ public class App {
                 case "5" -> deleteUser();
                 case "6" -> showAllUsers();
                 case "7" -> getUsersCount();
+                case "8" -> importUsers();
                 case "0" -> {
                     System.out.println("Завершение работы приложения.");
                     log.info("Приложение HibernateExample завершено.");
@@ -127,35 +134,29 @@ public class App {
         System.out.println("Введите ID пользователя для обновления: ");
         Long id =  Long.parseLong(scanner.nextLine());
 
-        Optional<User> userOptional = userService.getUserById(id);
-        if (userOptional.isEmpty()) {
-            System.out.println("Пользователь с " + id + " не найден.");
-            return;
-        }
-        User user = userOptional.get();
-
         System.out.println("Введите новые данные (оставьте пустым, чтобы сохранит текущее значение): ");
+        UserPatch.UserPatchBuilder patch = UserPatch.builder();
 
         System.out.println("Введите новое имя: ");
         String newName = scanner.nextLine().trim();
         if(!newName.isEmpty())
-            user.setName(newName);
+            patch.name(newName);
 
         System.out.println("Введите новый email: ");
         String newEmail = scanner.nextLine().trim();
         if(!newEmail.isEmpty())
-            user.setEmail(newEmail);
+            patch.email(newEmail);
 
         System.out.println("Введите новый возраст: ");
         String input = scanner.nextLine().trim();
-        int newAge;
         if (!input.isEmpty()) {
-            newAge = Integer.parseInt(scanner.nextLine());
-            user.setAge(newAge);
+            patch.age(Integer.parseInt(input));
         }
 
         try {
-            userService.updateUser(user);
+            if (!userService.patchUser(id, patch.build())) {
+                System.out.println("Пользователь с " + id + " не обновлен.");
+            }
         } catch (Exception e) {
             System.out.println("Ошибка обновления пользователя.\n" + e.getMessage());
         }
@@ -176,14 +177,13 @@ public class App {
     private void showAllUsers() {
         System.out.println("==============Список всех пользователей===============");
 
-        try {
-            List<User> users = userService.getAllUsers();
-            if (users.isEmpty()) {
+        try (Stream<User> users = userService.streamAllUsers()) {
+            Iterator<User> iterator = users.iterator();
+            if (!iterator.hasNext()) {
                 System.out.println("В базе данных нет пользователей.");
-            } else {
-                for (User user: users) {
-                    System.out.println(user);
-                }
+            }
+            while (iterator.hasNext()) {
+                System.out.println(iterator.next());
             }
         } catch (Exception e) {
             System.out.println("Ошибка вывода списка всех пользователей.\n" + e.getMessage());
@@ -194,15 +194,39 @@ public class App {
         System.out.println("==============Количество пользователей===============");
 
         try {
-            List<User> users = userService.getAllUsers();
-            if (users.isEmpty()) {
-                System.out.println("В базе данных 0 пользователей.");
+            Long usersCount = userService.getUsersCount();
+            if (usersCount == null) {
+                System.out.println("Не удалось получить количество пользователей.");
             } else {
-                System.out.println("В базе данных " + users.size() + " пользователей.");
+                System.out.println("В базе данных " + usersCount + " пользователей.");
             }
         } catch (Exception e) {
             System.out.println("Ошибка вывода общего количества пользователей.\n" + e.getMessage());
         }
     }
 
+    private void importUsers() {
+        System.out.println("==============Импорт пользователей из CSV===============");
+
+        System.out.println("Введите путь к CSV-файлу (name,email,age): ");
+        Path csv = Path.of(scanner.nextLine().trim());
+        Path checkpoint = csv.resolveSibling(csv.getFileName() + ".checkpoint");
+
+        try {
+            ImportReport report = new UserCsvImporter().importFile(csv, checkpoint);
+            System.out.println("Обработано строк: " + report.getRowsRead()
+                    + ", импортировано: " + report.getImported()
+                    + ", отклонено: " + report.getRejected()
+                    + ", скорость: " + Math.round(report.getRowsPerSecond()) + " строк/с.");
+            report.getRejectedRows().stream().limit(20).forEach(row ->
+                    System.out.println("Строка " + row.getLineNumber() + ": " + row.getReason()));
+            if (!report.isCompleted()) {
+                System.out.println("Импорт прерван: " + report.getError()
+                        + ". Повторный запуск продолжит с последней сохраненной пачки.");
+            }
+        } catch (Exception e) {
+            System.out.println("Ошибка импорта пользователей.\n" + e.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,70 @@
+package dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import models.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//итог пакетной операции: сколько записей прошло, какие пачки упали и какие записи не применены
+//из-за конфликта версий (строку изменили или удалили после чтения)
+@Getter
+@ToString
+public class BatchResult {
+    private final int requested;
+    private int succeeded;
+    private final List<ChunkFailure> failures = new ArrayList<>();
+    @ToString.Exclude
+    private final List<User> conflicts = new ArrayList<>();
+
+    public BatchResult(int requested) {
+        this.requested = requested;
+    }
+
+    void chunkSucceeded(int size) {
+        succeeded += size;
+    }
+
+    void chunkFailed(ChunkFailure failure) {
+        failures.add(failure);
+    }
+
+    void conflicted(User user) {
+        conflicts.add(user);
+    }
+
+    public List<User> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    public int getFailed() {
+        return failures.stream().mapToInt(ChunkFailure::getSize).sum();
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public List<ChunkFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString(exclude = {"users", "cause"})
+    public static class ChunkFailure {
+        private final int chunkIndex;
+        private final int firstIndex;
+        private final int size;
+        private final String message;
+        private final List<User> users;
+        private final Exception cause;
+    }
+}
@@ -0,0 +1,15 @@
+package dao;
+
+import models.User;
+
+import java.util.List;
+
+//итог поиска по списку id: найденные пользователи в порядке входных id (повторы id схлопываются)
+//и id, которых нет в таблице
+public record FoundUsers(List<User> users, List<Long> missingIds) {
+    public static final FoundUsers EMPTY = new FoundUsers(List.of(), List.of());
+
+    public boolean allFound() {
+        return missingIds.isEmpty();
+    }
+}
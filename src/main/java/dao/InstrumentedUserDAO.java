@@ -0,0 +1,156 @@
+package dao;
+
+import metrics.UserDAOMetrics;
+import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
+import models.UserVersion;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+//декоратор, замеряющий каждый вызов UserDAO; имя операции в метриках совпадает с именем метода
+public class InstrumentedUserDAO implements UserDAO {
+    private final UserDAO delegate;
+    private final UserDAOMetrics metrics;
+
+    public InstrumentedUserDAO(UserDAO delegate, UserDAOMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return metrics.record("findById", () -> delegate.findById(id));
+    }
+
+    @Override
+    public FoundUsers findAllById(Collection<Long> ids) {
+        return metrics.record("findAllById", () -> delegate.findAllById(ids));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return metrics.record("findByEmail", () -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return metrics.record("existsByEmail", () -> delegate.existsByEmail(email));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return metrics.record("existsById", () -> delegate.existsById(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return metrics.record("findAll", delegate::findAll);
+    }
+
+    //замеряется только открытие курсора, чтение потока остается на стороне вызывающего
+    @Override
+    public Stream<User> streamAll() {
+        return metrics.record("streamAll", delegate::streamAll);
+    }
+
+    @Override
+    public Stream<User> streamChangedSince(LocalDateTime since) {
+        return metrics.record("streamChangedSince", () -> delegate.streamChangedSince(since));
+    }
+
+    @Override
+    public Stream<UserVersion> streamAllVersions() {
+        return metrics.record("streamAllVersions", delegate::streamAllVersions);
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return metrics.record("findPage", () -> delegate.findPage(afterId, limit));
+    }
+
+    @Override
+    public Page<User> search(UserFilter filter, PageRequest page) {
+        return metrics.record("search", () -> delegate.search(filter, page));
+    }
+
+    @Override
+    public Optional<UserSummary> findSummaryByEmail(String email) {
+        return metrics.record("findSummaryByEmail", () -> delegate.findSummaryByEmail(email));
+    }
+
+    @Override
+    public List<UserSummary> findAllSummaries() {
+        return metrics.record("findAllSummaries", delegate::findAllSummaries);
+    }
+
+    @Override
+    public Stream<UserSummary> streamAllSummaries() {
+        return metrics.record("streamAllSummaries", delegate::streamAllSummaries);
+    }
+
+    @Override
+    public boolean save(User user) {
+        return metrics.record("save", () -> delegate.save(user));
+    }
+
+    @Override
+    public BatchResult saveAll(Collection<User> users) {
+        return metrics.record("saveAll", () -> delegate.saveAll(users));
+    }
+
+    @Override
+    public boolean update(User user) {
+        return metrics.record("update", () -> delegate.update(user));
+    }
+
+    @Override
+    public BatchResult updateAll(Collection<User> users) {
+        return metrics.record("updateAll", () -> delegate.updateAll(users));
+    }
+
+    @Override
+    public boolean patch(Long id, UserPatch patch) {
+        return metrics.record("patch", () -> delegate.patch(id, patch));
+    }
+
+    @Override
+    public UpsertResult upsertByEmail(User user) {
+        return metrics.record("upsertByEmail", () -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public UpsertResult upsertAll(Collection<User> users) {
+        return metrics.record("upsertAll", () -> delegate.upsertAll(users));
+    }
+
+    @Override
+    public void delete(Long id) {
+        metrics.record("delete", () -> delegate.delete(id));
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return metrics.record("deleteById", () -> delegate.deleteById(id));
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) {
+        return metrics.record("deleteAll", () -> delegate.deleteAll(ids));
+    }
+
+    @Override
+    public Long count() {
+        return metrics.record("count", delegate::count);
+    }
+
+    @Override
+    public Long approximateCount() {
+        return metrics.record("approximateCount", delegate::approximateCount);
+    }
+}
@@ -0,0 +1,68 @@
+package dao;
+
+import models.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//переносимый вариант на стандартном MERGE (H2 и другие БД без ON CONFLICT). MERGE не сообщает,
+//какие строки вставлены, поэтому существующие email читаются до него, а id новых строк - после
+class MergeUserUpserter implements UserUpserter {
+    private static final String MERGE = "MERGE INTO users u "
+            + "USING (VALUES (CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(100)), CAST(? AS INTEGER), CAST(? AS TIMESTAMP(6)))) "
+            + "AS s(name, email, age, updated_at) "
+            + "ON u.email = s.email "
+            + "WHEN MATCHED THEN UPDATE SET name = s.name, age = s.age, updated_at = s.updated_at, version = u.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (id, name, email, age, created_at, updated_at, version) "
+            + "VALUES (NEXT VALUE FOR users_seq, s.name, s.email, s.age, s.updated_at, s.updated_at, 0)";
+
+    @Override
+    public List<Long> upsert(Connection connection, List<User> users, LocalDateTime createdAt) throws SQLException {
+        Map<String, Long> existing = findIds(connection, users);
+        try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+            for (User user : users) {
+                statement.setString(1, user.getName());
+                statement.setString(2, user.getEmail());
+                statement.setInt(3, user.getAge());
+                statement.setTimestamp(4, Timestamp.valueOf(createdAt));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        Map<String, Long> ids = existing.size() == users.size() ? existing : findIds(connection, users);
+        List<Long> updatedIds = new ArrayList<>(existing.values());
+        for (User user : users) {
+            user.setId(ids.get(user.getEmail()));
+            if (!existing.containsKey(user.getEmail())) {
+                user.setCreatedAt(createdAt);
+            }
+        }
+        return updatedIds;
+    }
+
+    private static Map<String, Long> findIds(Connection connection, List<User> users) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(users.size(), "?"));
+        Map<String, Long> ids = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, email FROM users WHERE email IN (" + placeholders + ")")) {
+            for (int i = 0; i < users.size(); i++) {
+                statement.setString(i + 1, users.get(i).getEmail());
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.put(resultSet.getString(2), resultSet.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
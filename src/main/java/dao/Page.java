@@ -0,0 +1,17 @@
+package dao;
+
+import java.util.List;
+
+//nextAfterId = null, если страница последняя
+public record Page<T>(List<T> content, Long nextAfterId) {
+    public boolean hasNext() {
+        return nextAfterId != null;
+    }
+
+    public PageRequest next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("Страница последняя.");
+        }
+        return new PageRequest(nextAfterId, content.size());
+    }
+}
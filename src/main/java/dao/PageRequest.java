@@ -0,0 +1,14 @@
+package dao;
+
+//keyset-пагинация по id: следующая страница начинается после последнего id предыдущей
+public record PageRequest(Long afterId, int size) {
+    public PageRequest {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным: " + size);
+        }
+    }
+
+    public static PageRequest first(int size) {
+        return new PageRequest(null, size);
+    }
+}
@@ -0,0 +1,61 @@
+package dao;
+
+import models.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//INSERT ... ON CONFLICT (email) DO UPDATE над массивами-параметрами: одна команда на пачку;
+//xmax = 0 только у строк, вставленных этой командой
+class PostgresUserUpserter implements UserUpserter {
+    //каждое значение nextval занимает целый блок пула Hibernate, поэтому id не пересекаются с выданными приложением
+    private static final String UPSERT = "INSERT INTO users (id, name, email, age, created_at, updated_at, version) "
+            + "SELECT nextval('users_seq'), s.name, s.email, s.age, ?, ?, 0 "
+            + "FROM unnest(?::varchar[], ?::varchar[], ?::int[]) AS s(name, email, age) "
+            + "ON CONFLICT (email) DO UPDATE SET name = EXCLUDED.name, age = EXCLUDED.age, "
+            + "updated_at = EXCLUDED.updated_at, version = users.version + 1 "
+            + "RETURNING id, email, (xmax = 0) AS inserted";
+
+    @Override
+    public List<Long> upsert(Connection connection, List<User> users, LocalDateTime createdAt) throws SQLException {
+        String[] names = new String[users.size()];
+        String[] emails = new String[users.size()];
+        Integer[] ages = new Integer[users.size()];
+        Map<String, User> byEmail = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            names[i] = user.getName();
+            emails[i] = user.getEmail();
+            ages[i] = user.getAge();
+            byEmail.put(user.getEmail(), user);
+        }
+        List<Long> updatedIds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+            statement.setTimestamp(1, Timestamp.valueOf(createdAt));
+            statement.setTimestamp(2, Timestamp.valueOf(createdAt));
+            statement.setArray(3, connection.createArrayOf("varchar", names));
+            statement.setArray(4, connection.createArrayOf("varchar", emails));
+            statement.setArray(5, connection.createArrayOf("integer", ages));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    User user = byEmail.get(resultSet.getString(2));
+                    user.setId(resultSet.getLong(1));
+                    if (resultSet.getBoolean(3)) {
+                        user.setCreatedAt(createdAt);
+                    } else {
+                        updatedIds.add(user.getId());
+                    }
+                }
+            }
+        }
+        return updatedIds;
+    }
+}
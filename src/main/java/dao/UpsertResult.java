@@ -0,0 +1,10 @@
+package dao;
+
+//итог upsert: сколько строк вставлено и сколько обновлено (повторы email во входных данных не считаются)
+public record UpsertResult(int inserted, int updated) {
+    public static final UpsertResult EMPTY = new UpsertResult(0, 0);
+
+    public int total() {
+        return inserted + updated;
+    }
+}
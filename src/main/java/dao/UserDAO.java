@@ -1,15 +1,41 @@
 package dao;
 
 import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
+import models.UserVersion;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserDAO {
     Optional<User> findById(Long id);
+    FoundUsers findAllById(Collection<Long> ids);
     Optional<User> findByEmail(String email);
+    boolean existsByEmail(String email);
+    boolean existsById(Long id);
     List<User> findAll();
-    void save(User user);
-    void update(User user);
+    Stream<User> streamAll();
+    Stream<User> streamChangedSince(LocalDateTime since);
+    Stream<UserVersion> streamAllVersions();
+    List<User> findPage(Long afterId, int limit);
+    Page<User> search(UserFilter filter, PageRequest page);
+    Optional<UserSummary> findSummaryByEmail(String email);
+    List<UserSummary> findAllSummaries();
+    Stream<UserSummary> streamAllSummaries();
+    boolean save(User user);
+    BatchResult saveAll(Collection<User> users);
+    boolean update(User user);
+    BatchResult updateAll(Collection<User> users);
+    boolean patch(Long id, UserPatch patch);
+    UpsertResult upsertByEmail(User user);
+    UpsertResult upsertAll(Collection<User> users);
     void delete(Long id);
+    boolean deleteById(Long id);
+    int deleteAll(Collection<Long> ids);
     Long count();
+    Long approximateCount();
 }
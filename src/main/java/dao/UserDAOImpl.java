@@ -1,49 +1,152 @@
 package dao;
 
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import metrics.UserDAOMetrics;
 import models.User;
+import models.UserFilter;
+import models.User_;
+import models.UserPatch;
+import models.UserSummary;
+import models.UserVersion;
+import org.hibernate.BatchSize;
+import org.hibernate.FlushMode;
+import org.hibernate.OrderingMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
-import org.hibernate.query.Query;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.query.SelectionQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.HibernateSessionFactoryUtil;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+//ошибки БД перехватываются, логируются и отмечаются через UserDAOMetrics.failed(): вызывающий получает
+//null/empty/false, а метрики InstrumentedUserDAO все равно считают вызов ошибочным
 public class UserDAOImpl implements UserDAO{
     private static final Logger LOGGER = LoggerFactory.getLogger(UserDAOImpl.class);
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int IN_LIST_SIZE = 1000;
+    private static final int DEFAULT_MULTI_LOAD_SIZE = 100;
+    private static final String UPDATE_ALL = "UPDATE users SET name = ?, email = ?, age = ?, updated_at = ?, version = version + 1 "
+            + "WHERE id = ? AND version = ?";
+    private static final char LIKE_ESCAPE = '\\';
+    //регион кэша запросов для count(); Hibernate сбрасывает его сам, когда меняется таблица users
+    static final String COUNT_CACHE_REGION = "users-count";
+    private static final String SUMMARY_SELECT = "SELECT new models.UserSummary(u.id, u.name, u.email) FROM User u";
     private final SessionFactory sessionFactory;
+    private final int batchSize;
+    private final int fetchSize;
+    private final int multiLoadSize;
+    private final UserUpserter upserter;
+    //DELETE, возвращающий email удаленных строк (%s - параметры id): они нужны для точечной очистки кэша natural id
+    private final String deleteReturningEmails;
 
     public UserDAOImpl() {
-        this.sessionFactory = HibernateSessionFactoryUtil.getSessionFactory();
+        this(HibernateSessionFactoryUtil.getSessionFactory());
     }
 
     public UserDAOImpl(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        this.batchSize = HibernateSessionFactoryUtil.getIntProperty(sessionFactory,
+                AvailableSettings.STATEMENT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        this.fetchSize = HibernateSessionFactoryUtil.getIntProperty(sessionFactory,
+                AvailableSettings.STATEMENT_FETCH_SIZE, DEFAULT_FETCH_SIZE);
+        this.multiLoadSize = HibernateSessionFactoryUtil.getIntProperty(sessionFactory,
+                AvailableSettings.DEFAULT_BATCH_FETCH_SIZE, DEFAULT_MULTI_LOAD_SIZE);
+        this.upserter = HibernateSessionFactoryUtil.isPostgreSQL(sessionFactory)
+                ? new PostgresUserUpserter()
+                : new MergeUserUpserter();
+        //вне PostgreSQL - встроенная H2: прежние строки отдает таблица изменений OLD TABLE
+        this.deleteReturningEmails = HibernateSessionFactoryUtil.isPostgreSQL(sessionFactory)
+                ? "DELETE FROM users WHERE id IN (%s) RETURNING email"
+                : "SELECT email FROM OLD TABLE (DELETE FROM users WHERE id IN (%s))";
     }
 
     @Override
     public Optional<User> findById(Long id) {
         User user = null;
-        try (Session session = sessionFactory.openSession()) {
-            user = session.find(User.class, id);
+        try {
+            user = lookup(session -> session.find(User.class, id));
         } catch (Exception e) {
             LOGGER.error("Ошибка поиска пользователя по ID: {} .\n", id, e);
+            UserDAOMetrics.failed();
         }
         return Optional.ofNullable(user);
     }
 
+    //одна сессия на весь список: id, которые есть в кэше второго уровня, берутся из него,
+    //остальные читаются запросами WHERE id IN (...) по multiLoadSize штук (hibernate.default_batch_fetch_size)
+    @Override
+    public FoundUsers findAllById(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.isEmpty()) {
+            return FoundUsers.EMPTY;
+        }
+        FoundUsers result = null;
+        try {
+            List<User> loaded = lookup(session -> session.findMultiple(User.class, distinctIds,
+                    new BatchSize(multiLoadSize), OrderingMode.ORDERED));
+            List<User> users = new ArrayList<>(distinctIds.size());
+            List<Long> missingIds = new ArrayList<>();
+            for (int i = 0; i < distinctIds.size(); i++) {
+                if (loaded.get(i) != null) {
+                    users.add(loaded.get(i));
+                } else {
+                    missingIds.add(distinctIds.get(i));
+                }
+            }
+            result = new FoundUsers(users, missingIds);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка поиска {} пользователей по ID.\n", distinctIds.size(), e);
+            UserDAOMetrics.failed();
+        }
+        return result;
+    }
+
     @Override
     public Optional<User> findByEmail(String email) {
         User user = null;
-        try (Session session = sessionFactory.openSession()) {
-            Query<User> query = session.createQuery("FROM User u WHERE u.email = :email", User.class);
-            query.setParameter("email", email);
-            user = query.uniqueResult();
+        try {
+            //поиск по natural id сначала смотрит в кэш natural id, затем в кэш сущностей
+            user = lookup(session -> session.bySimpleNaturalId(User.class).load(email));
         } catch (Exception e) {
             LOGGER.error("Ошибка поиска пользователя c email: {} не найден .\n", email, e);
+            UserDAOMetrics.failed();
         }
         return Optional.ofNullable(user);
     }
@@ -51,77 +154,697 @@ public class UserDAOImpl implements UserDAO{
     @Override
     public List<User> findAll() {
         List<User> users = null;
-        try (Session session = sessionFactory.openSession()) {
-            users = session.createQuery("FROM User", User.class).getResultList();
+        try {
+            users = read(session -> session.createSelectionQuery("FROM User", User.class)
+                    .setFetchSize(fetchSize)
+                    .getResultList());
         } catch (Exception e) {
             LOGGER.error("Ошибка.\n", e);
+            UserDAOMetrics.failed();
+        }
+        return users;
+    }
+
+    //условия фильтра соединяются через AND; лишняя строка в выборке показывает, есть ли следующая страница
+    @Override
+    public Page<User> search(UserFilter filter, PageRequest page) {
+        Page<User> result = null;
+        try {
+            List<User> users = read(session -> {
+                CriteriaBuilder cb = session.getCriteriaBuilder();
+                CriteriaQuery<User> query = cb.createQuery(User.class);
+                Root<User> user = query.from(User.class);
+                List<Predicate> predicates = new ArrayList<>();
+                if (filter.getMinAge() != null) {
+                    predicates.add(cb.ge(user.get(User_.age), filter.getMinAge()));
+                }
+                if (filter.getMaxAge() != null) {
+                    predicates.add(cb.le(user.get(User_.age), filter.getMaxAge()));
+                }
+                if (filter.getNamePrefix() != null && !filter.getNamePrefix().isEmpty()) {
+                    predicates.add(cb.like(user.get(User_.name), escapeLike(filter.getNamePrefix()) + "%", LIKE_ESCAPE));
+                }
+                if (filter.getCreatedFrom() != null) {
+                    predicates.add(cb.greaterThanOrEqualTo(user.get(User_.createdAt), filter.getCreatedFrom()));
+                }
+                if (filter.getCreatedTo() != null) {
+                    predicates.add(cb.lessThan(user.get(User_.createdAt), filter.getCreatedTo()));
+                }
+                if (page.afterId() != null) {
+                    predicates.add(cb.gt(user.get(User_.id), page.afterId()));
+                }
+                query.where(predicates.toArray(Predicate[]::new)).orderBy(cb.asc(user.get(User_.id)));
+                return session.createSelectionQuery(query)
+                        .setMaxResults(page.size() + 1)
+                        .getResultList();
+            });
+            if (users.size() > page.size()) {
+                List<User> content = users.subList(0, page.size());
+                result = new Page<>(new ArrayList<>(content), content.get(content.size() - 1).getId());
+            } else {
+                result = new Page<>(users, null);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка поиска пользователей по фильтру: {}.\n", filter, e);
+            UserDAOMetrics.failed();
+        }
+        return result;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    //выбирается константа: сущность не загружается, хватает индекса
+    @Override
+    public boolean existsByEmail(String email) {
+        return exists("SELECT 1 FROM User u WHERE u.email = :value", "value", email);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return exists("SELECT 1 FROM User u WHERE u.id = :value", "value", id);
+    }
+
+    private boolean exists(String hql, String parameter, Object value) {
+        boolean exists = false;
+        try {
+            exists = read(session -> !session.createSelectionQuery(hql, Integer.class)
+                    .setParameter(parameter, value)
+                    .setMaxResults(1)
+                    .getResultList()
+                    .isEmpty());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка проверки существования пользователя: {}.\n", value, e);
+            UserDAOMetrics.failed();
+        }
+        return exists;
+    }
+
+    @Override
+    public Optional<UserSummary> findSummaryByEmail(String email) {
+        UserSummary summary = null;
+        try {
+            summary = read(session -> session.createSelectionQuery(SUMMARY_SELECT + " WHERE u.email = :email", UserSummary.class)
+                    .setParameter("email", email)
+                    .uniqueResult());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка поиска пользователя c email: {}.\n", email, e);
+            UserDAOMetrics.failed();
+        }
+        return Optional.ofNullable(summary);
+    }
+
+    @Override
+    public List<UserSummary> findAllSummaries() {
+        List<UserSummary> summaries = null;
+        try {
+            summaries = read(session -> session.createSelectionQuery(SUMMARY_SELECT, UserSummary.class)
+                    .setFetchSize(fetchSize)
+                    .getResultList());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения списка пользователей.\n", e);
+            UserDAOMetrics.failed();
+        }
+        return summaries;
+    }
+
+    //поток читается курсором порциями по fetchSize; поток обязательно закрывать (try-with-resources)
+    @Override
+    public Stream<User> streamAll() {
+        return scroll("FROM User", User.class);
+    }
+
+    @Override
+    public Stream<UserSummary> streamAllSummaries() {
+        return scroll(SUMMARY_SELECT, UserSummary.class);
+    }
+
+    //строки, записанные начиная с since (по updated_at); строки без updated_at сюда не попадают
+    @Override
+    public Stream<User> streamChangedSince(LocalDateTime since) {
+        return scroll("FROM User u WHERE u.updatedAt >= :since ORDER BY u.updatedAt, u.id", User.class,
+                Map.of("since", since));
+    }
+
+    @Override
+    public Stream<UserVersion> streamAllVersions() {
+        return scroll("SELECT new models.UserVersion(u.id, u.version) FROM User u", UserVersion.class);
+    }
+
+    private <T> Stream<T> scroll(String hql, Class<T> type) {
+        return scroll(hql, type, Map.of());
+    }
+
+    private <T> Stream<T> scroll(String hql, Class<T> type, Map<String, Object> parameters) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            //PostgreSQL отдает строки порциями только внутри транзакции
+            Transaction transaction = session.beginTransaction();
+            session.doWork(connection -> connection.setReadOnly(true));
+            SelectionQuery<T> query = session.createSelectionQuery(hql, type).setFetchSize(fetchSize);
+            parameters.forEach(query::setParameter);
+            ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+            return stream(results).onClose(() -> {
+                results.close();
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                session.close();
+            });
+        } catch (Exception e) {
+            session.close();
+            LOGGER.error("Ошибка потокового чтения пользователей.\n", e);
+            UserDAOMetrics.failed();
+            return Stream.empty();
+        }
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        List<User> users = null;
+        try {
+            users = read(session -> session.createSelectionQuery("FROM User u WHERE u.id > :afterId ORDER BY u.id", User.class)
+                    .setParameter("afterId", afterId == null ? Long.MIN_VALUE : afterId)
+                    .setMaxResults(limit)
+                    .getResultList());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения страницы пользователей после ID: {}.\n", afterId, e);
+            UserDAOMetrics.failed();
         }
         return users;
     }
 
+    //сессия только для чтения: сущности без снимков для dirty checking, flush не выполняется,
+    //транзакция READ ONLY на уровне JDBC (пул сбрасывает флаг при возврате соединения).
+    //Только для запросов, которые всегда идут в БД: транзакция сразу берет соединение из пула
+    private <T> T read(Function<Session, T> work) {
+        try (Session session = sessionFactory.withOptions().flushMode(FlushMode.MANUAL).openSession()) {
+            session.setDefaultReadOnly(true);
+            Transaction transaction = session.beginTransaction();
+            try {
+                session.doWork(connection -> connection.setReadOnly(true));
+                T result = work.apply(session);
+                transaction.commit();
+                return result;
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        }
+    }
+
+    //поиск, на который может ответить кэш второго уровня: без транзакции соединение берется из пула,
+    //только когда Hibernate дошел до SQL (autocommit на каждый запрос), попадание в кэш пул не трогает
+    private <T> T lookup(Function<Session, T> work) {
+        try (Session session = sessionFactory.withOptions().flushMode(FlushMode.MANUAL).openSession()) {
+            session.setDefaultReadOnly(true);
+            return work.apply(session);
+        }
+    }
+
+    private static <T> Stream<T> stream(ScrollableResults<T> results) {
+        Iterator<T> iterator = new Iterator<>() {
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    hasNext = results.next();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                return results.get();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     @Override
-    public void save(User user) {
+    public boolean save(User user) {
         Transaction transaction = null;
         try (Session session = sessionFactory.openSession()) {
             transaction = session.beginTransaction();
             session.persist(user);
             transaction.commit();
-            LOGGER.info("Пользователь с email: {} успешно сохранен.\n", user.getEmail());
+            LOGGER.debug("Пользователь с email: {} успешно сохранен.\n", user.getEmail());
+            return true;
         } catch (Exception e) {
             if(transaction !=null) {
                 transaction.rollback();
             }
             LOGGER.error("Ошибка сохранения пользователя.\n", e);
+            UserDAOMetrics.failed();
+            return false;
         }
     }
 
     @Override
-    public void update(User user) {
+    public BatchResult saveAll(Collection<User> users) {
+        BatchResult result = new BatchResult(users.size());
+        List<User> chunk = new ArrayList<>(batchSize);
+        int chunkIndex = 0;
+        Session session = openBatchSession();
+        try {
+            for (User user : users) {
+                chunk.add(user);
+                if (chunk.size() == batchSize) {
+                    session = saveChunk(session, chunk, chunkIndex++, result);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                session = saveChunk(session, chunk, chunkIndex, result);
+            }
+        } finally {
+            session.close();
+        }
+        LOGGER.info("Пакетно сохранено {} из {} пользователей.\n", result.getSucceeded(), result.getRequested());
+        return result;
+    }
+
+    //каждая пачка - отдельная транзакция; после коммита контекст очищается, чтобы память не росла
+    private Session saveChunk(Session session, List<User> chunk, int chunkIndex, BatchResult result) {
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            for (User user : chunk) {
+                session.persist(user);
+            }
+            session.flush();
+            session.clear();
+            transaction.commit();
+            result.chunkSucceeded(chunk.size());
+            return session;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOGGER.error("Ошибка сохранения пачки пользователей №{}.\n", chunkIndex, e);
+            UserDAOMetrics.failed();
+            //сбрасываем выданные id, чтобы пачку можно было сохранить повторно
+            List<User> failed = new ArrayList<>(chunk);
+            failed.forEach(user -> user.setId(0));
+            result.chunkFailed(new BatchResult.ChunkFailure(chunkIndex, chunkIndex * batchSize, failed.size(),
+                    e.getMessage(), failed, e));
+            //после ошибки сессия непригодна для дальнейшей работы
+            session.close();
+            return openBatchSession();
+        }
+    }
+
+    private Session openBatchSession() {
+        Session session = sessionFactory.openSession();
+        session.setJdbcBatchSize(batchSize);
+        return session;
+    }
+
+    //UPDATE без предварительной загрузки сущностей, JDBC-батчами; каждая пачка - отдельная транзакция.
+    //Версия проверяется, как в update: строки, которые изменили или удалили после чтения, не перезаписываются
+    //и попадают в BatchResult.getConflicts(). Записанные пользователи получают новую версию.
+    //Прежние email пачки читаются одним SELECT, чтобы убрать из кэша natural id только сменившиеся
+    @Override
+    public BatchResult updateAll(Collection<User> users) {
+        BatchResult result = new BatchResult(users.size());
+        List<User> all = new ArrayList<>(users);
+        for (int from = 0, chunkIndex = 0; from < all.size(); from += batchSize, chunkIndex++) {
+            List<User> chunk = all.subList(from, Math.min(from + batchSize, all.size()));
+            try (Session session = sessionFactory.openSession()) {
+                Transaction transaction = session.beginTransaction();
+                Map<Long, String> oldEmails;
+                int[] counts;
+                try {
+                    Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+                    oldEmails = emailsById(session, chunk.stream().map(User::getId).toList());
+                    counts = session.doReturningWork(connection -> {
+                        try (PreparedStatement statement = connection.prepareStatement(UPDATE_ALL)) {
+                            for (User user : chunk) {
+                                statement.setString(1, user.getName());
+                                statement.setString(2, user.getEmail());
+                                statement.setInt(3, user.getAge());
+                                statement.setTimestamp(4, updatedAt);
+                                statement.setLong(5, user.getId());
+                                statement.setLong(6, user.getVersion());
+                                statement.addBatch();
+                            }
+                            return statement.executeBatch();
+                        }
+                    });
+                    transaction.commit();
+                } catch (RuntimeException e) {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                    throw e;
+                }
+                //строки изменены в обход Hibernate: из кэша второго уровня убираются только записанные,
+                //из кэша natural id - только прежний и новый email тех, у кого email сменился
+                List<String> changedEmails = new ArrayList<>();
+                int succeeded = 0;
+                for (int i = 0; i < chunk.size(); i++) {
+                    User user = chunk.get(i);
+                    //SUCCESS_NO_INFO: драйвер не сообщил число строк, конфликт не распознать
+                    if (counts[i] == 0) {
+                        result.conflicted(user);
+                        continue;
+                    }
+                    succeeded++;
+                    user.setVersion(user.getVersion() + 1);
+                    sessionFactory.getCache().evictEntityData(User.class, user.getId());
+                    String oldEmail = oldEmails.get(user.getId());
+                    if (oldEmail != null && !oldEmail.equals(user.getEmail())) {
+                        changedEmails.add(oldEmail);
+                        changedEmails.add(user.getEmail());
+                    }
+                }
+                evictNaturalIds(session, changedEmails);
+                result.chunkSucceeded(succeeded);
+            } catch (Exception e) {
+                LOGGER.error("Ошибка обновления пачки пользователей №{}.\n", chunkIndex, e);
+                UserDAOMetrics.failed();
+                result.chunkFailed(new BatchResult.ChunkFailure(chunkIndex, from, chunk.size(),
+                        e.getMessage(), new ArrayList<>(chunk), e));
+            }
+        }
+        if (result.hasConflicts()) {
+            LOGGER.warn("Пакетное обновление: {} пользователей изменены или удалены после чтения, не записаны.\n",
+                    result.getConflicts().size());
+        }
+        LOGGER.info("Пакетно обновлено {} из {} пользователей.\n", result.getSucceeded(), result.getRequested());
+        return result;
+    }
+
+    //текущие email по id одним запросом в транзакции вызывающего
+    private static Map<Long, String> emailsById(Session session, List<Long> ids) {
+        Map<Long, String> emails = new HashMap<>();
+        if (ids.isEmpty()) {
+            return emails;
+        }
+        session.createNativeQuery("SELECT id, email FROM users WHERE id IN (:ids)", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> emails.put(((Number) row[0]).longValue(), (String) row[1]));
+        return emails;
+    }
+
+    //точечно убирает записи email -> id из кэша natural id; evictNaturalIdData(User.class) сбросил бы весь регион
+    private void evictNaturalIds(Session session, Collection<String> emails) {
+        EntityPersister persister = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel().getEntityDescriptor(User.class);
+        if (emails.isEmpty() || !persister.hasNaturalIdCache()) {
+            return;
+        }
+        NaturalIdDataAccess access = persister.getNaturalIdCacheAccessStrategy();
+        SharedSessionContractImplementor implementor = session.unwrap(SharedSessionContractImplementor.class);
+        for (String email : emails) {
+            access.evict(access.generateCacheKey(email, persister, implementor));
+        }
+    }
+
+    //при конфликте версий бросает OptimisticLockException, чтобы вызывающий мог перечитать строку и повторить;
+    //после успешного обновления переданный объект получает новую версию. False - остальные ошибки записи
+    @Override
+    public boolean update(User user) {
+        try (Session session = sessionFactory.openSession()) {
+            //откат внутри сессии: после ее закрытия соединение уже недоступно
+            Transaction transaction = session.beginTransaction();
+            try {
+                User merged = session.merge(user);
+                transaction.commit();
+                user.setVersion(merged.getVersion());
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+            LOGGER.debug("Пользователь с ID: {} успешно обновлен. \n", user.getId());
+            return true;
+        } catch (Exception e) {
+            if (isVersionConflict(e)) {
+                LOGGER.warn("Конфликт версий при обновлении пользователя с ID: {}, версия {}.\n", user.getId(), user.getVersion());
+                throw e instanceof OptimisticLockException conflict ? conflict : new OptimisticLockException(e.getMessage(), e, user);
+            }
+            LOGGER.error("Ошибка обновления пользователя с ID: {}.\n", user.getId(), e);
+            UserDAOMetrics.failed();
+            return false;
+        }
+    }
+
+    private static boolean isVersionConflict(Exception e) {
+        return e instanceof OptimisticLockException || e instanceof StaleStateException;
+    }
+
+    //один UPDATE только переданных столбцов, без SELECT перед записью; версия увеличивается.
+    //Прежний email читается, только если патч его меняет: он нужен для очистки кэша natural id
+    @Override
+    public boolean patch(Long id, UserPatch patch) {
+        if (patch.isEmpty()) {
+            LOGGER.warn("Пустые изменения для пользователя с ID: {}, обновление пропущено. \n", id);
+            return false;
+        }
+        boolean updated = false;
         Transaction transaction = null;
         try (Session session = sessionFactory.openSession()) {
             transaction = session.beginTransaction();
-            session.merge(user);
+            String oldEmail = patch.getEmail() == null ? null : emailsById(session, List.of(id)).get(id);
+            updated = session.doReturningWork(connection -> executePatch(connection, id, patch)) > 0;
             transaction.commit();
-            LOGGER.info("Пользователь с ID: {} успешно обновлен. \n", user.getId());
+            if (updated) {
+                //строка изменена в обход Hibernate: из кэшей убирается только она и ее прежний/новый email
+                sessionFactory.getCache().evictEntityData(User.class, id);
+                if (oldEmail != null && !oldEmail.equals(patch.getEmail())) {
+                    evictNaturalIds(session, List.of(oldEmail, patch.getEmail()));
+                }
+                LOGGER.debug("Пользователь с ID: {} успешно обновлен: {}. \n", id, patch);
+            } else {
+                LOGGER.warn("Пользователь с ID: {} не найден. \n", id);
+            }
         } catch (Exception e) {
             if(transaction !=null) {
                 transaction.rollback();
             }
-            LOGGER.error("Ошибка обновления пользователя с ID: {}.\n", user.getId(), e);
+            //строка могла быть изменена до неудачного коммита: изменение откатилось
+            updated = false;
+            LOGGER.error("Ошибка обновления пользователя с ID: {}.\n", id, e);
+            UserDAOMetrics.failed();
+        }
+        return updated;
+    }
+
+    //UPDATE через JDBC, а не HQL: массовая операция Hibernate сбросила бы весь регион User и кэш natural id
+    private static int executePatch(Connection connection, Long id, UserPatch patch) throws SQLException {
+        List<String> assignments = new ArrayList<>(5);
+        if (patch.getName() != null) {
+            assignments.add("name = ?");
+        }
+        if (patch.getEmail() != null) {
+            assignments.add("email = ?");
+        }
+        if (patch.getAge() != null) {
+            assignments.add("age = ?");
+        }
+        assignments.add("updated_at = ?");
+        assignments.add("version = version + 1");
+        String sql = "UPDATE users SET " + String.join(", ", assignments) + " WHERE id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (patch.getName() != null) {
+                statement.setString(index++, patch.getName());
+            }
+            if (patch.getEmail() != null) {
+                statement.setString(index++, patch.getEmail());
+            }
+            if (patch.getAge() != null) {
+                statement.setInt(index++, patch.getAge());
+            }
+            statement.setTimestamp(index++, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setLong(index, id);
+            return statement.executeUpdate();
         }
     }
 
+    @Override
+    public UpsertResult upsertByEmail(User user) {
+        return upsertAll(List.of(user));
+    }
+
+    //все пачки в одной транзакции; при повторе email во входных данных записывается последний пользователь
+    @Override
+    public UpsertResult upsertAll(Collection<User> users) {
+        if (users.isEmpty()) {
+            return UpsertResult.EMPTY;
+        }
+        Map<String, User> byEmail = new LinkedHashMap<>();
+        users.forEach(user -> byEmail.put(user.getEmail(), user));
+        List<User> distinctUsers = new ArrayList<>(byEmail.values());
+        UpsertResult result = null;
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                List<Long> updatedIds = session.doReturningWork(connection -> {
+                    List<Long> ids = new ArrayList<>();
+                    LocalDateTime createdAt = LocalDateTime.now();
+                    for (int from = 0; from < distinctUsers.size(); from += IN_LIST_SIZE) {
+                        ids.addAll(upserter.upsert(connection,
+                                distinctUsers.subList(from, Math.min(from + IN_LIST_SIZE, distinctUsers.size())), createdAt));
+                    }
+                    return ids;
+                });
+                transaction.commit();
+                //строки изменены в обход Hibernate: обновленные записи убираются из кэша второго уровня
+                updatedIds.forEach(id -> sessionFactory.getCache().evictEntityData(User.class, id));
+                //вставки в обход Hibernate не меняют отметку времени таблицы - кэш count сбрасывается явно
+                sessionFactory.getCache().evictQueryRegion(COUNT_CACHE_REGION);
+                result = new UpsertResult(distinctUsers.size() - updatedIds.size(), updatedIds.size());
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+            LOGGER.info("Upsert пользователей: вставлено {}, обновлено {}.\n", result.inserted(), result.updated());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка upsert пользователей.\n", e);
+            UserDAOMetrics.failed();
+        }
+        return result;
+    }
+
     @Override
     public void delete(Long id) {
+        deleteById(id);
+    }
+
+    //один DELETE без предварительной загрузки сущности; кэш второго уровня очищается только для этой строки
+    @Override
+    public boolean deleteById(Long id) {
+        boolean deleted = false;
         Transaction transaction = null;
         try (Session session = sessionFactory.openSession()) {
             transaction = session.beginTransaction();
-            User user = session.find(User.class, id);
-            if (user != null) {
-                session.remove(user);
-                transaction.commit();
-                LOGGER.info("Пользователь с ID: {} успешно удален. \n", id);
+            List<String> emails = delete(session, List.of(id));
+            transaction.commit();
+            deleted = !emails.isEmpty();
+            evictDeleted(session, List.of(id), emails);
+            if (deleted) {
+                LOGGER.debug("Пользователь с ID: {} успешно удален. \n", id);
             } else {
                 LOGGER.warn("Пользователь с ID: {} не найден. \n", id);
-                transaction.rollback();
             }
         } catch (Exception e) {
             if(transaction !=null) {
                 transaction.rollback();
             }
+            deleted = false;
             LOGGER.error("Ошибка удаления пользователя с ID: {}.\n", id, e);
+            UserDAOMetrics.failed();
+        }
+        return deleted;
+    }
+
+    //все пачки в одной транзакции: либо удаляются все, либо ни одна
+    @Override
+    public int deleteAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
         }
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            List<String> emails = new ArrayList<>();
+            for (int from = 0; from < distinctIds.size(); from += IN_LIST_SIZE) {
+                emails.addAll(delete(session, distinctIds.subList(from, Math.min(from + IN_LIST_SIZE, distinctIds.size()))));
+            }
+            transaction.commit();
+            deleted = emails.size();
+            evictDeleted(session, distinctIds, emails);
+            LOGGER.info("Удалено {} пользователей из {} запрошенных.\n", deleted, distinctIds.size());
+        } catch (Exception e) {
+            if(transaction !=null) {
+                transaction.rollback();
+            }
+            deleted = 0;
+            LOGGER.error("Ошибка пакетного удаления пользователей.\n", e);
+            UserDAOMetrics.failed();
+        }
+        return deleted;
+    }
+
+    //DELETE через JDBC, а не HQL: массовая операция Hibernate сбросила бы весь регион User и кэш natural id.
+    //Возвращает email удаленных строк
+    private List<String> delete(Session session, List<Long> ids) {
+        return session.doReturningWork(connection -> {
+            String sql = deleteReturningEmails.formatted(String.join(", ", Collections.nCopies(ids.size(), "?")));
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    statement.setLong(i + 1, ids.get(i));
+                }
+                List<String> emails = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        emails.add(resultSet.getString(1));
+                    }
+                }
+                return emails;
+            }
+        });
+    }
+
+    //после коммита: удаленные строки, их email и кэш count; остальные записи кэшей остаются
+    private void evictDeleted(Session session, Collection<Long> ids, Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        ids.forEach(id -> sessionFactory.getCache().evictEntityData(User.class, id));
+        evictNaturalIds(session, emails);
+        sessionFactory.getCache().evictQueryRegion(COUNT_CACHE_REGION);
     }
 
     @Override
     public Long count() {
         Long count = null;
-        try (Session session = sessionFactory.openSession()) {
-            SelectionQuery<Long> query = session.createSelectionQuery("SELECT COUNT(u) FROM User u", Long.class);
-            count = query.getSingleResult();
+        try {
+            //при включенном кэше запросов повторный COUNT без изменений таблицы отдается из памяти;
+            //соединение Hibernate все равно берет до проверки кэша запросов, но без транзакции и SET READ ONLY
+            count = lookup(session -> session.createSelectionQuery("SELECT COUNT(u) FROM User u", Long.class)
+                    .setCacheable(true)
+                    .setCacheRegion(COUNT_CACHE_REGION)
+                    .getSingleResult());
         } catch (Exception e) {
             LOGGER.error("Ошибка получения кол-ва пользователей.\n",  e);
+            UserDAOMetrics.failed();
         }
         return count;
     }
+
+    //на PostgreSQL берет оценку планировщика из pg_class, на остальных БД или без статистики - точный COUNT
+    @Override
+    public Long approximateCount() {
+        if (HibernateSessionFactoryUtil.isPostgreSQL(sessionFactory)) {
+            try {
+                Long estimate = read(session -> session.createNativeQuery(
+                        "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass('users')", Long.class)
+                        .uniqueResult());
+                //reltuples = -1, пока таблицу ни разу не анализировали
+                if (estimate != null && estimate >= 0) {
+                    return estimate;
+                }
+            } catch (Exception e) {
+                LOGGER.error("Ошибка получения оценки кол-ва пользователей.\n", e);
+            }
+        }
+        return count();
+    }
 }
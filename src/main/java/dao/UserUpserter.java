@@ -0,0 +1,15 @@
+package dao;
+
+import models.User;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+//вставка или обновление пачки пользователей по email одним обращением к БД;
+//email в пачке уникальны, вставленным и обновленным пользователям проставляется id
+interface UserUpserter {
+    //возвращает id обновленных строк, остальные строки пачки вставлены
+    List<Long> upsert(Connection connection, List<User> users, LocalDateTime createdAt) throws SQLException;
+}
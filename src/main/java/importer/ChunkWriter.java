@@ -0,0 +1,11 @@
+package importer;
+
+import models.User;
+
+import java.util.List;
+import java.util.Set;
+
+interface ChunkWriter {
+    //пишет пачку одной транзакцией; возвращает вставленные email-ы, дубликаты в них не входят
+    Set<String> write(List<User> users) throws Exception;
+}
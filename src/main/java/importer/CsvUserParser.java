@@ -0,0 +1,102 @@
+package importer;
+
+import models.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//разбор строк формата name,email,age; поля можно брать в двойные кавычки
+class CsvUserParser {
+    static final String HEADER = "name,email,age";
+    private static final int MAX_NAME_LENGTH = 50;
+    private static final int MAX_EMAIL_LENGTH = 100;
+    private static final int MAX_AGE = 150;
+
+    ParsedChunk parse(RawChunk chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        List<User> users = new ArrayList<>(chunk.getLines().size());
+        List<Long> userLines = new ArrayList<>(chunk.getLines().size());
+        List<RejectedRow> rejected = new ArrayList<>();
+
+        long lineNumber = chunk.getFirstLine();
+        for (String line : chunk.getLines()) {
+            if (line.isBlank()) {
+                lineNumber++;
+                continue;
+            }
+            try {
+                User user = toUser(split(line));
+                user.setCreatedAt(now);
+                users.add(user);
+                userLines.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                rejected.add(new RejectedRow(lineNumber, e.getMessage(), line));
+            }
+            lineNumber++;
+        }
+        return new ParsedChunk(chunk, users, userLines, rejected);
+    }
+
+    static boolean isHeader(String line) {
+        return line.replace(" ", "").replace("\"", "").equalsIgnoreCase(HEADER);
+    }
+
+    private static User toUser(List<String> fields) {
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("ожидается 3 поля, получено " + fields.size());
+        }
+        String name = fields.get(0).trim();
+        String email = fields.get(1).trim();
+        String age = fields.get(2).trim();
+
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("некорректное имя");
+        }
+        int at = email.indexOf('@');
+        if (email.length() > MAX_EMAIL_LENGTH || at <= 0 || at != email.lastIndexOf('@') || at == email.length() - 1) {
+            throw new IllegalArgumentException("некорректный email");
+        }
+        int parsedAge;
+        try {
+            parsedAge = Integer.parseInt(age);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректный возраст");
+        }
+        if (parsedAge < 0 || parsedAge > MAX_AGE) {
+            throw new IllegalArgumentException("некорректный возраст");
+        }
+        return new User(name, email, parsedAge);
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("незакрытая кавычка");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,61 @@
+package importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+//последняя закоммиченная пачка; файл перезаписывается атомарно после каждого коммита
+@Getter
+@AllArgsConstructor
+public class ImportCheckpoint {
+    private final long lastCommittedLine;
+    private final long chunksCommitted;
+    private final long rowsRead;
+    private final long imported;
+    private final long rejected;
+
+    static ImportCheckpoint of(ImportReport report) {
+        return new ImportCheckpoint(report.getLastCommittedLine(), report.getChunksCommitted(),
+                report.getRowsRead(), report.getImported(), report.getRejected());
+    }
+
+    public static Optional<ImportCheckpoint> load(Path file) throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return Optional.of(new ImportCheckpoint(
+                Long.parseLong(properties.getProperty("lastCommittedLine", "0")),
+                Long.parseLong(properties.getProperty("chunksCommitted", "0")),
+                Long.parseLong(properties.getProperty("rowsRead", "0")),
+                Long.parseLong(properties.getProperty("imported", "0")),
+                Long.parseLong(properties.getProperty("rejected", "0"))));
+    }
+
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("lastCommittedLine", String.valueOf(lastCommittedLine));
+        properties.setProperty("chunksCommitted", String.valueOf(chunksCommitted));
+        properties.setProperty("rowsRead", String.valueOf(rowsRead));
+        properties.setProperty("imported", String.valueOf(imported));
+        properties.setProperty("rejected", String.valueOf(rejected));
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "users import checkpoint");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,32 @@
+package importer;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+@Getter
+@Builder
+@ToString
+public class ImportOptions {
+    //строк в одной пачке; пачка - единица записи в БД и точка возобновления
+    @Builder.Default
+    private final int chunkSize = 5000;
+    //потоков разбора и валидации
+    @Builder.Default
+    private final int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    //сколько отклоненных строк хранить в отчете построчно, остальные только считаются
+    @Builder.Default
+    private final int maxRejectedDetails = 1000;
+    //COPY на PostgreSQL; false - всегда батчами через StatelessSession
+    @Builder.Default
+    private final boolean useCopy = true;
+    @Builder.Default
+    private final Charset charset = StandardCharsets.UTF_8;
+
+    public static ImportOptions defaults() {
+        return ImportOptions.builder().build();
+    }
+}
@@ -0,0 +1,70 @@
+package importer;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//итог импорта; при возобновлении счетчики продолжаются с контрольной точки
+@Getter
+@ToString(exclude = "rejectedRows")
+public class ImportReport {
+    private long rowsRead;
+    private long imported;
+    private long rejected;
+    private long lastCommittedLine;
+    private long chunksCommitted;
+    //строки, прочитанные прошлыми запусками до контрольной точки
+    private long resumedRows;
+    private long elapsedMillis;
+    private boolean resumed;
+    private boolean completed;
+    private String error;
+    private final List<RejectedRow> rejectedRows = new ArrayList<>();
+    private final int maxRejectedDetails;
+
+    ImportReport(int maxRejectedDetails) {
+        this.maxRejectedDetails = maxRejectedDetails;
+    }
+
+    void resumeFrom(ImportCheckpoint checkpoint) {
+        resumed = true;
+        lastCommittedLine = checkpoint.getLastCommittedLine();
+        rowsRead = checkpoint.getRowsRead();
+        resumedRows = checkpoint.getRowsRead();
+        imported = checkpoint.getImported();
+        rejected = checkpoint.getRejected();
+        chunksCommitted = checkpoint.getChunksCommitted();
+    }
+
+    void chunkCommitted(int rows, long imported, List<RejectedRow> rejectedRows, long lastLine) {
+        this.rowsRead += rows;
+        this.imported += imported;
+        this.rejected += rejectedRows.size();
+        this.lastCommittedLine = lastLine;
+        this.chunksCommitted++;
+        for (RejectedRow row : rejectedRows) {
+            if (this.rejectedRows.size() >= maxRejectedDetails) {
+                break;
+            }
+            this.rejectedRows.add(row);
+        }
+    }
+
+    void finish(long elapsedMillis, boolean completed, String error) {
+        this.elapsedMillis = elapsedMillis;
+        this.completed = completed;
+        this.error = error;
+    }
+
+    public List<RejectedRow> getRejectedRows() {
+        return Collections.unmodifiableList(rejectedRows);
+    }
+
+    //скорость текущего запуска: elapsedMillis не включает время прошлых запусков
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : (rowsRead - resumedRows) * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,17 @@
+package importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import models.User;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+class ParsedChunk {
+    private final RawChunk source;
+    private final List<User> users;
+    //номера строк файла для users, в том же порядке
+    private final List<Long> userLines;
+    private final List<RejectedRow> rejected;
+}
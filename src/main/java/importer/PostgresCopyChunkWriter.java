@@ -0,0 +1,87 @@
+package importer;
+
+import models.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//COPY во временную таблицу, затем один INSERT ... SELECT, пропускающий уже существующие email
+class PostgresCopyChunkWriter implements ChunkWriter {
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE IF NOT EXISTS users_import "
+            + "(name varchar(50), email varchar(100), age integer, created_at timestamp(6)) ON COMMIT DELETE ROWS";
+    private static final String COPY = "COPY users_import (name, email, age, created_at) FROM STDIN WITH (FORMAT csv)";
+    //каждое значение nextval занимает целый блок пула Hibernate, поэтому id не пересекаются с выданными приложением
+    private static final String INSERT = "INSERT INTO users (id, name, email, age, created_at, updated_at, version) "
+            + "SELECT nextval('users_seq'), name, email, age, created_at, created_at, 0 FROM users_import "
+            + "ON CONFLICT (email) DO NOTHING RETURNING email";
+
+    private final SessionFactory sessionFactory;
+
+    PostgresCopyChunkWriter(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public Set<String> write(List<User> users) {
+        String csv = toCsv(users);
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                Set<String> inserted = session.doReturningWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(CREATE_STAGING);
+                    }
+                    CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                    try {
+                        copyManager.copyIn(COPY, new StringReader(csv));
+                    } catch (IOException e) {
+                        throw new SQLException("Ошибка передачи данных COPY", e);
+                    }
+                    Set<String> emails = new HashSet<>();
+                    try (Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery(INSERT)) {
+                        while (resultSet.next()) {
+                            emails.add(resultSet.getString(1));
+                        }
+                    }
+                    return emails;
+                });
+                transaction.commit();
+                //COPY идет в обход Hibernate: закэшированный count сбрасывается явно
+                sessionFactory.getCache().evictQueryRegions();
+                return inserted;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static String toCsv(List<User> users) {
+        StringBuilder csv = new StringBuilder(users.size() * 64);
+        for (User user : users) {
+            appendQuoted(csv, user.getName()).append(',');
+            appendQuoted(csv, user.getEmail()).append(',');
+            csv.append(user.getAge()).append(',');
+            csv.append(user.getCreatedAt()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static StringBuilder appendQuoted(StringBuilder csv, String value) {
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
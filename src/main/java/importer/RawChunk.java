@@ -0,0 +1,15 @@
+package importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+class RawChunk {
+    private final long index;
+    private final long firstLine;
+    private final long lastLine;
+    private final List<String> lines;
+}
@@ -0,0 +1,14 @@
+package importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class RejectedRow {
+    private final long lineNumber;
+    private final String reason;
+    private final String line;
+}
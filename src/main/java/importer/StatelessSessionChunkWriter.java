@@ -0,0 +1,69 @@
+package importer;
+
+import models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import utils.HibernateSessionFactoryUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//переносимый вариант: отсеивает существующие email и вставляет пачку JDBC-батчами без контекста персистентности
+class StatelessSessionChunkWriter implements ChunkWriter {
+    private static final int IN_LIST_SIZE = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final int batchSize;
+
+    StatelessSessionChunkWriter(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        this.batchSize = HibernateSessionFactoryUtil.getIntProperty(sessionFactory,
+                AvailableSettings.STATEMENT_BATCH_SIZE, 50);
+    }
+
+    @Override
+    public Set<String> write(List<User> users) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(batchSize);
+            Transaction transaction = session.beginTransaction();
+            try {
+                Set<String> existing = findExisting(session, users);
+                Set<String> inserted = new HashSet<>();
+                List<User> toInsert = new ArrayList<>(users.size());
+                for (User user : users) {
+                    if (!existing.contains(user.getEmail()) && inserted.add(user.getEmail())) {
+                        toInsert.add(user);
+                    }
+                }
+                session.insertMultiple(toInsert);
+                transaction.commit();
+                //вставки StatelessSession не сбрасывают кэш запросов, закэшированный count устарел бы
+                sessionFactory.getCache().evictQueryRegions();
+                return inserted;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static Set<String> findExisting(StatelessSession session, List<User> users) {
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < users.size(); from += IN_LIST_SIZE) {
+            List<String> emails = new ArrayList<>(IN_LIST_SIZE);
+            for (User user : users.subList(from, Math.min(from + IN_LIST_SIZE, users.size()))) {
+                emails.add(user.getEmail());
+            }
+            existing.addAll(session.createSelectionQuery("SELECT u.email FROM User u WHERE u.email IN :emails", String.class)
+                    .setParameter("emails", emails)
+                    .getResultList());
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,182 @@
+package importer;
+
+import models.User;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import services.UserService;
+import utils.HibernateSessionFactoryUtil;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Конвейер импорта: поток чтения режет файл на пачки, пул потоков разбирает и валидирует их,
+//текущий поток пишет пачки в БД строго по порядку и после каждой сохраняет контрольную точку.
+public class UserCsvImporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserCsvImporter.class);
+    private static final Future<ParsedChunk> END_OF_FILE = CompletableFuture.completedFuture(null);
+
+    private final SessionFactory sessionFactory;
+    private final ImportOptions options;
+    //null - импорт не сообщает о вставках: фильтр email и счетчик в памяти сервиса устареют до перестроения
+    private final UserService userService;
+
+    public UserCsvImporter() {
+        this(HibernateSessionFactoryUtil.getSessionFactory(), ImportOptions.defaults());
+    }
+
+    public UserCsvImporter(SessionFactory sessionFactory, ImportOptions options) {
+        this(sessionFactory, options, null);
+    }
+
+    //userService - сервис поверх той же таблицы, которому передаются email-ы и число вставленных строк
+    public UserCsvImporter(SessionFactory sessionFactory, ImportOptions options, UserService userService) {
+        this.sessionFactory = sessionFactory;
+        this.options = options;
+        this.userService = userService;
+    }
+
+    public ImportReport importFile(Path csv) {
+        return importFile(csv, null);
+    }
+
+    //checkpointFile - файл контрольной точки; если он есть, импорт продолжается после последней закоммиченной пачки
+    public ImportReport importFile(Path csv, Path checkpointFile) {
+        ImportReport report = new ImportReport(options.getMaxRejectedDetails());
+        long start = System.nanoTime();
+        ExecutorService parsers = Executors.newFixedThreadPool(options.getParserThreads());
+        BlockingQueue<Future<ParsedChunk>> pending = new ArrayBlockingQueue<>(options.getParserThreads() * 2);
+        Thread reader = null;
+        try {
+            ImportCheckpoint.load(checkpointFile).ifPresent(report::resumeFrom);
+            if (report.isResumed()) {
+                LOGGER.info("Импорт {} продолжается после строки {}.\n", csv, report.getLastCommittedLine());
+            }
+            ChunkWriter writer = createWriter();
+            long skipThroughLine = report.getLastCommittedLine();
+            reader = new Thread(() -> readChunks(csv, skipThroughLine, parsers, pending), "users-import-reader");
+            reader.start();
+
+            Future<ParsedChunk> next;
+            while ((next = pending.take()) != END_OF_FILE) {
+                commit(next.get(), writer, report);
+                if (checkpointFile != null) {
+                    ImportCheckpoint.of(report).save(checkpointFile);
+                }
+            }
+            report.finish(elapsedMillis(start), true, null);
+            if (checkpointFile != null) {
+                Files.deleteIfExists(checkpointFile);
+            }
+            LOGGER.info("Импорт {} завершен: {} строк, импортировано {}, отклонено {}, {} строк/с.\n",
+                    csv, report.getRowsRead(), report.getImported(), report.getRejected(),
+                    Math.round(report.getRowsPerSecond()));
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            report.finish(elapsedMillis(start), false, e.getMessage());
+            LOGGER.error("Ошибка импорта {}, последняя закоммиченная строка: {}.\n",
+                    csv, report.getLastCommittedLine(), e);
+        } finally {
+            if (reader != null) {
+                reader.interrupt();
+            }
+            parsers.shutdownNow();
+        }
+        return report;
+    }
+
+    private ChunkWriter createWriter() {
+        if (options.isUseCopy() && HibernateSessionFactoryUtil.isPostgreSQL(sessionFactory)) {
+            return new PostgresCopyChunkWriter(sessionFactory);
+        }
+        return new StatelessSessionChunkWriter(sessionFactory);
+    }
+
+    private void readChunks(Path csv, long skipThroughLine, ExecutorService parsers,
+                            BlockingQueue<Future<ParsedChunk>> pending) {
+        CsvUserParser parser = new CsvUserParser();
+        try {
+            try (BufferedReader in = Files.newBufferedReader(csv, options.getCharset())) {
+                long lineNumber = 0;
+                long index = 0;
+                long firstLine = 0;
+                List<String> lines = new ArrayList<>(options.getChunkSize());
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lineNumber++;
+                    if (lineNumber <= skipThroughLine || (lineNumber == 1 && CsvUserParser.isHeader(line))) {
+                        continue;
+                    }
+                    if (lines.isEmpty()) {
+                        firstLine = lineNumber;
+                    }
+                    lines.add(line);
+                    if (lines.size() == options.getChunkSize()) {
+                        RawChunk chunk = new RawChunk(index++, firstLine, lineNumber, lines);
+                        pending.put(parsers.submit(() -> parser.parse(chunk)));
+                        lines = new ArrayList<>(options.getChunkSize());
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    RawChunk chunk = new RawChunk(index, firstLine, lineNumber, lines);
+                    pending.put(parsers.submit(() -> parser.parse(chunk)));
+                }
+            }
+            pending.put(END_OF_FILE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                pending.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void commit(ParsedChunk chunk, ChunkWriter writer, ImportReport report) throws Exception {
+        List<RejectedRow> rejected = new ArrayList<>(chunk.getRejected());
+        long imported = 0;
+        if (!chunk.getUsers().isEmpty()) {
+            if (userService != null) {
+                userService.registerExternalEmails(chunk.getUsers().stream().map(User::getEmail).toList());
+            }
+            Set<String> inserted = writer.write(chunk.getUsers());
+            RawChunk source = chunk.getSource();
+            for (int i = 0; i < chunk.getUsers().size(); i++) {
+                User user = chunk.getUsers().get(i);
+                //каждый вставленный email засчитывается один раз, повтор внутри файла - тоже дубликат
+                if (inserted.remove(user.getEmail())) {
+                    imported++;
+                } else {
+                    long line = chunk.getUserLines().get(i);
+                    rejected.add(new RejectedRow(line, "email уже существует",
+                            source.getLines().get((int) (line - source.getFirstLine()))));
+                }
+            }
+            if (userService != null) {
+                userService.registerExternalInserts(imported);
+            }
+        }
+        report.chunkCommitted(chunk.getUsers().size() + chunk.getRejected().size(), imported, rejected,
+                chunk.getSource().getLastLine());
+        LOGGER.debug("Пачка №{} записана, строки до {}.\n", chunk.getSource().getIndex(), chunk.getSource().getLastLine());
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
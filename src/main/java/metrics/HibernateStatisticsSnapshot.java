@@ -0,0 +1,48 @@
+package metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.hibernate.stat.Statistics;
+
+//выжимка из org.hibernate.stat.Statistics; доли попаданий в кэш от 0 до 1
+@Getter
+@ToString
+@AllArgsConstructor
+public class HibernateStatisticsSnapshot {
+    private final boolean statisticsEnabled;
+    private final long sessionsOpened;
+    private final long transactions;
+    private final long statementsPrepared;
+    private final long queriesExecuted;
+    private final long entityLoads;
+    private final long entityInserts;
+    private final long entityUpdates;
+    private final long entityDeletes;
+    private final long flushes;
+    private final double secondLevelCacheHitRatio;
+    private final double naturalIdCacheHitRatio;
+    private final double queryCacheHitRatio;
+
+    static HibernateStatisticsSnapshot of(Statistics statistics) {
+        return new HibernateStatisticsSnapshot(
+                statistics.isStatisticsEnabled(),
+                statistics.getSessionOpenCount(),
+                statistics.getTransactionCount(),
+                statistics.getPrepareStatementCount(),
+                statistics.getQueryExecutionCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getEntityInsertCount(),
+                statistics.getEntityUpdateCount(),
+                statistics.getEntityDeleteCount(),
+                statistics.getFlushCount(),
+                ratio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()),
+                ratio(statistics.getNaturalIdCacheHitCount(), statistics.getNaturalIdCacheMissCount()),
+                ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()));
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,62 @@
+package metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//латентность одной операции в микросекундах, счетчик ошибок и SQL на вызов
+class OperationMetrics {
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder jdbcMicros = new LongAdder();
+    private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos, boolean failed, SqlStats sql) {
+        latency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (failed) {
+            errors.increment();
+        }
+        statements.add(sql.getStatements());
+        rows.add(sql.getRows());
+        jdbcMicros.add(sql.getJdbcMicros());
+        maxStatements.accumulate(sql.getStatements());
+    }
+
+    OperationSnapshot snapshot(String name, long elapsedNanos) {
+        Histogram copy = latency.copy();
+        long count = copy.getTotalCount();
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return new OperationSnapshot(
+                name,
+                count,
+                errors.sum(),
+                seconds > 0 ? count / seconds : 0,
+                copy.getMean(),
+                copy.getValueAtPercentile(50),
+                copy.getValueAtPercentile(99),
+                copy.getValueAtPercentile(99.9),
+                copy.getMaxValue(),
+                perCall(statements, count),
+                maxStatements.get(),
+                perCall(rows, count),
+                perCall(jdbcMicros, count));
+    }
+
+    private static double perCall(LongAdder total, long count) {
+        return count > 0 ? (double) total.sum() / count : 0;
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+        statements.reset();
+        rows.reset();
+        jdbcMicros.reset();
+        maxStatements.reset();
+    }
+}
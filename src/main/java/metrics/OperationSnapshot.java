@@ -0,0 +1,26 @@
+package metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//времена в микросекундах, пропускная способность - операций в секунду с момента сброса;
+//SQL на вызов считается, только если соединения выдает utils.PooledConnectionProvider
+@Getter
+@ToString
+@AllArgsConstructor
+public class OperationSnapshot {
+    private final String operation;
+    private final long count;
+    private final long errors;
+    private final double throughputPerSecond;
+    private final double meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    private final double meanStatements;
+    private final long maxStatements;
+    private final double meanRows;
+    private final double meanJdbcMicros;
+}
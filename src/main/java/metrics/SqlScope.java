@@ -0,0 +1,50 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Область подсчета SQL, открытая SqlTracker.begin(). Соединения, полученные из пула внутри области,
+//пишут в нее даже из другого потока; вложенные области передают счетчики внешней.
+public final class SqlScope implements AutoCloseable {
+    private final SqlScope parent;
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong jdbcNanos = new AtomicLong();
+    private boolean closed;
+
+    SqlScope(SqlScope parent) {
+        this.parent = parent;
+    }
+
+    SqlScope parent() {
+        return parent;
+    }
+
+    void statement(long nanos) {
+        for (SqlScope scope = this; scope != null; scope = scope.parent) {
+            scope.statements.incrementAndGet();
+            scope.jdbcNanos.addAndGet(nanos);
+        }
+    }
+
+    void fetch(boolean row, long nanos) {
+        for (SqlScope scope = this; scope != null; scope = scope.parent) {
+            if (row) {
+                scope.rows.incrementAndGet();
+            }
+            scope.jdbcNanos.addAndGet(nanos);
+        }
+    }
+
+    public SqlStats getStats() {
+        return new SqlStats(statements.get(), rows.get(), TimeUnit.NANOSECONDS.toMicros(jdbcNanos.get()));
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            SqlTracker.end(this);
+        }
+    }
+}
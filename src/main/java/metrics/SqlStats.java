@@ -0,0 +1,22 @@
+package metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//SQL одной логической операции: выполненные запросы (executeBatch - один запрос), прочитанные строки
+//результатов и время внутри JDBC-вызовов в микросекундах
+@Getter
+@ToString
+@AllArgsConstructor
+public class SqlStats {
+    public static final SqlStats EMPTY = new SqlStats(0, 0, 0);
+
+    private final long statements;
+    private final long rows;
+    private final long jdbcMicros;
+
+    public SqlStats plus(SqlStats other) {
+        return new SqlStats(statements + other.statements, rows + other.rows, jdbcMicros + other.jdbcMicros);
+    }
+}
@@ -0,0 +1,93 @@
+package metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+//Подсчет SQL по логическим операциям: запросы, строки результатов и время JDBC.
+//Пока в потоке открыта область (begin), пул соединений (utils.PooledConnectionProvider) отдает соединения-обертки,
+//которые пишут в эту область; вне областей соединения не оборачиваются и накладных расходов нет.
+//Считается и SQL, выполненный в обход Hibernate через doWork (батчи, upsert); COPY идет мимо JDBC-вызовов и не считается.
+public final class SqlTracker {
+    private static final ThreadLocal<SqlScope> CURRENT = new ThreadLocal<>();
+
+    private SqlTracker() {}
+
+    public static SqlScope begin() {
+        SqlScope scope = new SqlScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void end(SqlScope scope) {
+        if (CURRENT.get() == scope) {
+            if (scope.parent() == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(scope.parent());
+            }
+        }
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    //SQL, выполненный call; если нужен и результат call, удобнее begin()
+    public static SqlStats measure(Runnable call) {
+        try (SqlScope scope = begin()) {
+            call.run();
+            return scope.getStats();
+        }
+    }
+
+    //вызывается пулом при выдаче соединения
+    public static Connection track(Connection connection) {
+        SqlScope scope = CURRENT.get();
+        return scope == null ? connection : wrap(connection, Connection.class, scope);
+    }
+
+    private static <T> T wrap(Object target, Class<T> type, SqlScope scope) {
+        return type.cast(Proxy.newProxyInstance(SqlTracker.class.getClassLoader(), new Class<?>[]{type},
+                new Handler(target, scope)));
+    }
+
+    private record Handler(Object target, SqlScope scope) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            boolean execute = target instanceof Statement && name.startsWith("execute");
+            boolean next = target instanceof ResultSet && name.equals("next");
+            long start = execute || next ? System.nanoTime() : 0;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (execute) {
+                    scope.statement(System.nanoTime() - start);
+                }
+            }
+            if (next) {
+                scope.fetch((Boolean) result, System.nanoTime() - start);
+            }
+            Class<?> returnType = method.getReturnType();
+            if (result != null && (Statement.class.isAssignableFrom(returnType) || returnType == ResultSet.class)
+                    && !name.equals("unwrap")) {
+                return wrap(result, returnType, scope);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package metrics;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.HibernateSessionFactoryUtil;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//Метрики методов UserDAO вместе со статистикой Hibernate; доступны через API и JMX (HibernateExample:type=UserDAOMetrics).
+//SQL на вызов считается только после setSqlTracking(true) или внутри уже открытой области SqlTracker
+//(например, операции UserServiceMetrics): подсчет оборачивает каждое соединение и вызов JDBC в прокси.
+public class UserDAOMetrics implements UserDAOMetricsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserDAOMetrics.class);
+    public static final String OBJECT_NAME = "HibernateExample:type=UserDAOMetrics";
+    private static UserDAOMetrics instance;
+
+    //вызовы record, идущие сейчас в этом потоке (вложенные - по цепочке через outer в record)
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    private final SessionFactory sessionFactory;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+    private volatile boolean sqlTracking;
+
+    public UserDAOMetrics(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    //общий экземпляр для фабрики из HibernateSessionFactoryUtil, при первом обращении регистрируется в JMX
+    public static synchronized UserDAOMetrics getInstance() {
+        if (instance == null) {
+            instance = new UserDAOMetrics(HibernateSessionFactoryUtil.getSessionFactory());
+            instance.registerMBean(OBJECT_NAME);
+        }
+        return instance;
+    }
+
+    public void registerMBean(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка регистрации MBean {}.\n", objectName, e);
+        }
+    }
+
+    public <T> T record(String operation, Supplier<T> call) {
+        OperationMetrics metrics = operations.computeIfAbsent(operation, key -> new OperationMetrics());
+        long start = System.nanoTime();
+        boolean failed = true;
+        Call current = Call.begin();
+        //без подсчета соединения не оборачиваются; если область уже открыта, они и так обернуты
+        SqlScope sql = sqlTracking || SqlTracker.isActive() ? SqlTracker.begin() : null;
+        try {
+            T result = call.get();
+            failed = current.failed;
+            return result;
+        } finally {
+            SqlStats stats = SqlStats.EMPTY;
+            if (sql != null) {
+                sql.close();
+                stats = sql.getStats();
+            }
+            metrics.record(System.nanoTime() - start, failed, stats);
+            current.end();
+        }
+    }
+
+    //отмечает ошибочными вызов, который сейчас замеряется в этом потоке, и все внешние (например, операцию
+    //UserServiceMetrics); для DAO, которые перехватывают исключения и возвращают null/empty. Вне record ничего не делает
+    public static void failed() {
+        for (Call call = CURRENT.get(); call != null; call = call.outer) {
+            call.failed = true;
+        }
+    }
+
+    @Override
+    public boolean isSqlTracking() {
+        return sqlTracking;
+    }
+
+    @Override
+    public void setSqlTracking(boolean sqlTracking) {
+        this.sqlTracking = sqlTracking;
+    }
+
+    public void record(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, OperationSnapshot> getOperations() {
+        long elapsed = System.nanoTime() - startNanos;
+        Map<String, OperationSnapshot> snapshots = new TreeMap<>();
+        operations.forEach((name, metrics) -> snapshots.put(name, metrics.snapshot(name, elapsed)));
+        return snapshots;
+    }
+
+    public OperationSnapshot getOperation(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        return metrics == null ? null : metrics.snapshot(operation, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public HibernateStatisticsSnapshot getHibernateStatistics() {
+        return HibernateStatisticsSnapshot.of(statistics());
+    }
+
+    @Override
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+        statistics().clear();
+        startNanos = System.nanoTime();
+    }
+
+    private Statistics statistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    //замеряемый вызов в потоке; вложенные связаны через outer
+    static final class Call {
+        private final Call outer;
+        private boolean failed;
+
+        private Call(Call outer) {
+            this.outer = outer;
+        }
+
+        static Call begin() {
+            Call call = new Call(CURRENT.get());
+            CURRENT.set(call);
+            return call;
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        void end() {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+import java.util.Map;
+
+public interface UserDAOMetricsMXBean {
+    Map<String, OperationSnapshot> getOperations();
+
+    HibernateStatisticsSnapshot getHibernateStatistics();
+
+    boolean isSqlTracking();
+
+    void setSqlTracking(boolean sqlTracking);
+
+    void reset();
+}
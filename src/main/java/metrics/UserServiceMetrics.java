@@ -0,0 +1,56 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//Метрики операций UserService: на каждую операцию открывается своя область SqlTracker, поэтому видно,
+//сколько SQL, строк и времени JDBC стоит логическая операция целиком (поиск, merge-select, update, повторы).
+//Ошибкой считается исключение из операции или ошибка, которую проглотил DAO внутри нее (UserDAOMetrics.failed()).
+//Заполняется декоратором services.InstrumentedUserService.
+public class UserServiceMetrics {
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    public <T> T record(String operation, Supplier<T> call) {
+        OperationMetrics metrics = operations.computeIfAbsent(operation, key -> new OperationMetrics());
+        long start = System.nanoTime();
+        boolean failed = true;
+        UserDAOMetrics.Call current = UserDAOMetrics.Call.begin();
+        SqlScope sql = SqlTracker.begin();
+        try {
+            T result = call.get();
+            failed = current.isFailed();
+            return result;
+        } finally {
+            sql.close();
+            metrics.record(System.nanoTime() - start, failed, sql.getStats());
+            current.end();
+        }
+    }
+
+    public void record(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public Map<String, OperationSnapshot> getOperations() {
+        long elapsed = System.nanoTime() - startNanos;
+        Map<String, OperationSnapshot> snapshots = new TreeMap<>();
+        operations.forEach((name, metrics) -> snapshots.put(name, metrics.snapshot(name, elapsed)));
+        return snapshots;
+    }
+
+    public OperationSnapshot getOperation(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        return metrics == null ? null : metrics.snapshot(operation, System.nanoTime() - startNanos);
+    }
+
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+        startNanos = System.nanoTime();
+    }
+}
@@ -1,33 +1,66 @@
 package models;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.SourceType;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name= "users")
+//индексы для поиска по фильтру (UserDAO.search)
+@Table(name= "users", indexes = {
+        @Index(name = "idx_users_age", columnList = "age"),
+        @Index(name = "idx_users_name", columnList = "name"),
+        @Index(name = "idx_users_created_at", columnList = "created_at"),
+        @Index(name = "idx_users_updated_at", columnList = "updated_at")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
+//UPDATE содержит только измененные столбцы
+@DynamicUpdate
 @NoArgsConstructor
 @Getter
 @Setter
-@ToString(exclude = "createdAt")
+@ToString(exclude = {"createdAt", "updatedAt"})
 public class User {
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-email";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //последовательность с шагом 50: Hibernate выдает id из памяти и может батчить INSERT-ы.
+    //В таблице, созданной до перехода с IDENTITY, users_seq начинается с 1 - при старте ее сдвигает
+    //HibernateSessionFactoryUtil.alignUserSequence, вручную при развертывании ничего делать не нужно
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = User.ID_ALLOCATION_SIZE)
     private long id;
 
     @Column(nullable = false, length = 50)
     private String name;
 
+    //email меняется пользователем, поэтому natural id изменяемый
+    @NaturalId(mutable = true)
     @Column(unique = true, nullable = false, length = 100)
     private String email;
 
@@ -36,6 +69,19 @@ public class User {
     @Column(name="created_at", updatable = false)
     private LocalDateTime createdAt;
 
+    //время последней записи по часам приложения (без лишнего SELECT после INSERT/UPDATE); по нему
+    //replica.UserReplica забирает измененные строки. Пути в обход Hibernate выставляют его сами
+    @CurrentTimestamp(source = SourceType.VM)
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    //оптимистическая блокировка: UPDATE с устаревшей версией не затирает чужие изменения, а падает
+    //с OptimisticLockException; значение по умолчанию нужно, чтобы добавить столбец в заполненную таблицу
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -46,4 +92,14 @@ public class User {
         this.email = email;
         this.age = age;
     }
+
+    //отсоединенная копия со всеми полями, для кэшей приложения
+    public User copy() {
+        User copy = new User(name, email, age);
+        copy.id = id;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.version = version;
+        return copy;
+    }
 }
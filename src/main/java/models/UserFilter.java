@@ -0,0 +1,24 @@
+package models;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+//условия поиска пользователей: null - условие не применяется, границы возраста включительные,
+//окно создания [createdFrom, createdTo)
+@Getter
+@Builder
+@ToString
+public class UserFilter {
+    private final Integer minAge;
+    private final Integer maxAge;
+    private final String namePrefix;
+    private final LocalDateTime createdFrom;
+    private final LocalDateTime createdTo;
+
+    public static UserFilter any() {
+        return UserFilter.builder().build();
+    }
+}
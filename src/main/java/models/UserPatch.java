@@ -0,0 +1,19 @@
+package models;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+//частичное обновление пользователя: null - поле не меняется
+@Getter
+@Builder
+@ToString
+public class UserPatch {
+    private final String name;
+    private final String email;
+    private final Integer age;
+
+    public boolean isEmpty() {
+        return name == null && email == null && age == null;
+    }
+}
@@ -0,0 +1,5 @@
+package models;
+
+//проекция пользователя для списков и поиска: создается прямо запросом, без контекста персистентности
+public record UserSummary(long id, String name, String email) {
+}
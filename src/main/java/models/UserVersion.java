@@ -0,0 +1,5 @@
+package models;
+
+//id и версия строки: по ним реплика находит строки, изменения которых пропустил опрос по updated_at
+public record UserVersion(long id, long version) {
+}
@@ -0,0 +1,122 @@
+package replica;
+
+import java.util.Arrays;
+
+//email -> номер строки. В ячейке хранится только номер строки и хэш email: сами строки лежат в PackedStrings,
+//и сравниваются там без создания String. Удаление, как и в IdIndex, со сдвигом назад.
+final class EmailIndex {
+    private static final int EMPTY = -1;
+
+    private int[] rows;
+    private int[] hashes;
+    private int mask;
+    private int size;
+
+    EmailIndex(int expected) {
+        allocate(IdIndex.capacityFor(expected));
+    }
+
+    int get(String email, int hash, PackedStrings strings, int[] emailOffsets) {
+        int[] rows = this.rows;
+        int[] hashes = this.hashes;
+        int mask = this.mask;
+        for (int slot = hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            int row = rows[slot];
+            if (row == EMPTY) {
+                return EMPTY;
+            }
+            if (hashes[slot] == hash && strings.matches(emailOffsets[row], email)) {
+                return row;
+            }
+        }
+        return EMPTY;
+    }
+
+    //строка с тем же email заменяется: в БД email уникален, старая строка уже устарела
+    void put(String email, int hash, int row, PackedStrings strings, int[] emailOffsets) {
+        if ((size + 1) * 2 > rows.length) {
+            resize(rows.length * 2);
+        }
+        int slot = hash & mask;
+        while (rows[slot] != EMPTY) {
+            if (hashes[slot] == hash && strings.matches(emailOffsets[rows[slot]], email)) {
+                rows[slot] = row;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        rows[slot] = row;
+        hashes[slot] = hash;
+        size++;
+    }
+
+    //убирает запись, только если она указывает на эту строку
+    void remove(int hash, int row) {
+        int slot = find(hash, row);
+        if (slot != EMPTY) {
+            shiftBack(slot);
+            size--;
+        }
+    }
+
+    //строка переехала на другой номер (удаление с переносом последней строки)
+    void move(int hash, int fromRow, int toRow) {
+        int slot = find(hash, fromRow);
+        if (slot != EMPTY) {
+            rows[slot] = toRow;
+        }
+    }
+
+    long bytes() {
+        return (long) rows.length * Integer.BYTES * 2;
+    }
+
+    private int find(int hash, int row) {
+        for (int slot = hash & mask; rows[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (rows[slot] == row) {
+                return slot;
+            }
+        }
+        return EMPTY;
+    }
+
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (rows[slot] == EMPTY) {
+                break;
+            }
+            int ideal = hashes[slot] & mask;
+            if (((slot - ideal) & mask) >= ((slot - hole) & mask)) {
+                rows[hole] = rows[slot];
+                hashes[hole] = hashes[slot];
+                hole = slot;
+            }
+        }
+        rows[hole] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        int[] oldRows = rows;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+        for (int i = 0; i < oldRows.length; i++) {
+            if (oldRows[i] != EMPTY) {
+                int slot = oldHashes[i] & mask;
+                while (rows[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                rows[slot] = oldRows[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        rows = new int[capacity];
+        hashes = new int[capacity];
+        Arrays.fill(rows, EMPTY);
+        mask = capacity - 1;
+    }
+}
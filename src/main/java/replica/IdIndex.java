@@ -0,0 +1,114 @@
+package replica;
+
+import java.util.Arrays;
+
+//id -> номер строки: открытая адресация с линейным пробированием в двух примитивных массивах.
+//Удаление сдвигает следующие записи назад, поэтому надгробий нет и поиск не деградирует.
+final class IdIndex {
+    private static final int EMPTY = -1;
+
+    private long[] keys;
+    private int[] rows;
+    private int mask;
+    private int size;
+
+    IdIndex(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    int get(long id) {
+        long[] keys = this.keys;
+        int[] rows = this.rows;
+        int mask = this.mask;
+        //не больше capacity проб: при чтении без блокировки таблица может меняться под ногами
+        for (int slot = slot(id, mask), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            int row = rows[slot];
+            if (row == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[slot] == id) {
+                return row;
+            }
+        }
+        return EMPTY;
+    }
+
+    void put(long id, int row) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slot(id, mask);
+        while (rows[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                rows[slot] = row;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        rows[slot] = row;
+        size++;
+    }
+
+    void remove(long id) {
+        int slot = slot(id, mask);
+        while (rows[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                shiftBack(slot);
+                size--;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    long bytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (rows[slot] == EMPTY) {
+                break;
+            }
+            int ideal = slot(keys[slot], mask);
+            //запись можно перенести в дыру, если ее исходная ячейка не лежит между дырой и текущей позицией
+            if (((slot - ideal) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                rows[hole] = rows[slot];
+                hole = slot;
+            }
+        }
+        rows[hole] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldRows = rows;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRows[i] != EMPTY) {
+                put(oldKeys[i], oldRows[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        rows = new int[capacity];
+        Arrays.fill(rows, EMPTY);
+        mask = capacity - 1;
+    }
+
+    static int capacityFor(int expected) {
+        return Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+    }
+
+    private static int slot(long id, int mask) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,129 @@
+package replica;
+
+import java.util.Arrays;
+
+//Строки одним массивом байт, как компактные строки JDK: 2 байта заголовка (старший бит - UTF-16,
+//остальные - число символов), затем символы по 1 байту (Latin-1) или по 2 (UTF-16).
+//Строка адресуется смещением; замененные строки остаются мусором до compact() у владельца.
+final class PackedStrings {
+    private static final int UTF16 = 0x8000;
+    private static final int MAX_LENGTH = 0x7FFF;
+
+    private byte[] data;
+    private int length;
+    private long garbage;
+
+    PackedStrings(int initialBytes) {
+        data = new byte[Math.max(initialBytes, 16)];
+    }
+
+    int add(String value) {
+        int chars = value.length();
+        if (chars > MAX_LENGTH) {
+            throw new IllegalArgumentException("Строка длиннее " + MAX_LENGTH + " символов");
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < chars && latin1; i++) {
+            latin1 = value.charAt(i) < 0x100;
+        }
+        int offset = length;
+        ensureCapacity(2 + (latin1 ? chars : chars * 2));
+        int header = latin1 ? chars : chars | UTF16;
+        data[length++] = (byte) (header >>> 8);
+        data[length++] = (byte) header;
+        for (int i = 0; i < chars; i++) {
+            char c = value.charAt(i);
+            if (!latin1) {
+                data[length++] = (byte) (c >>> 8);
+            }
+            data[length++] = (byte) c;
+        }
+        return offset;
+    }
+
+    void release(int offset) {
+        garbage += sizeOf(offset);
+    }
+
+    String get(int offset) {
+        int chars = chars(offset);
+        char[] value = new char[chars];
+        for (int i = 0; i < chars; i++) {
+            value[i] = charAt(offset, i);
+        }
+        return new String(value);
+    }
+
+    //сравнение без декодирования строки
+    boolean matches(int offset, String value) {
+        int chars = chars(offset);
+        if (chars != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < chars; i++) {
+            if (charAt(offset, i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int hash(int offset) {
+        int chars = chars(offset);
+        int hash = 0;
+        for (int i = 0; i < chars; i++) {
+            hash = 31 * hash + charAt(offset, i);
+        }
+        return mix(hash);
+    }
+
+    static int hash(String value) {
+        return mix(value.hashCode());
+    }
+
+    long usedBytes() {
+        return length;
+    }
+
+    long capacityBytes() {
+        return data.length;
+    }
+
+    long garbageBytes() {
+        return garbage;
+    }
+
+    private int header(int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private int chars(int offset) {
+        return header(offset) & MAX_LENGTH;
+    }
+
+    private char charAt(int offset, int index) {
+        if ((header(offset) & UTF16) == 0) {
+            return (char) (data[offset + 2 + index] & 0xFF);
+        }
+        int position = offset + 2 + index * 2;
+        return (char) (((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF));
+    }
+
+    private int sizeOf(int offset) {
+        int header = header(offset);
+        int chars = header & MAX_LENGTH;
+        return 2 + ((header & UTF16) == 0 ? chars : chars * 2);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+
+    //хэш String.hashCode() с перемешиванием битов, чтобы соседние email не шли в соседние ячейки
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
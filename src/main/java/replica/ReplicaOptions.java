@@ -0,0 +1,31 @@
+package replica;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Getter
+@Builder
+@ToString
+public class ReplicaOptions {
+    //как часто забирать измененные строки; Duration.ZERO - только вручную через refresh()
+    @Builder.Default
+    private final Duration pollInterval = Duration.ofSeconds(1);
+    //запас назад от прошлого опроса: updated_at ставят часы приложения до коммита, и строка
+    //из транзакции длиннее этого запаса (или с другого узла с отстающими часами) будет пропущена опросом;
+    //ее подхватит rescan() по id (новая строка) или по версии (измененная)
+    @Builder.Default
+    private final Duration pollOverlap = Duration.ofSeconds(5);
+    //как часто сверять id и версии с таблицей: так находятся удаленные строки и изменения, пропущенные опросом
+    @Builder.Default
+    private final Duration rescanInterval = Duration.ofMinutes(1);
+    //на сколько строк выделить массивы сразу, чтобы не расширять их во время загрузки
+    @Builder.Default
+    private final int initialCapacity = 1024;
+
+    public static ReplicaOptions defaults() {
+        return ReplicaOptions.builder().build();
+    }
+}
@@ -0,0 +1,24 @@
+package replica;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//размеры в байтах по выделенным массивам (с запасом роста), без заголовков объектов;
+//garbageStringBytes - строки, замененные обновлениями и еще не вычищенные
+@Getter
+@ToString
+@AllArgsConstructor
+public class ReplicaStats {
+    private final int rows;
+    private final long columnBytes;
+    private final long stringBytes;
+    private final long garbageStringBytes;
+    private final long indexBytes;
+    private final long totalBytes;
+    private final double bytesPerRow;
+    private final long refreshes;
+    private final long changedRows;
+    private final long deletedRows;
+    private final long rescans;
+}
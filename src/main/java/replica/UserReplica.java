@@ -0,0 +1,479 @@
+package replica;
+
+import dao.FoundUsers;
+import dao.UserDAO;
+import models.User;
+import models.UserSummary;
+import models.UserVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.HibernateSessionFactoryUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+//Копия таблицы users в памяти по столбцам: id и age в примитивных массивах, name и email в одном массиве байт,
+//поиск по id и email через индексы с открытой адресацией. На строку нет ни одного объекта, поэтому
+//поиск не создает сущностей и почти не нагружает GC. Все массивы плоские и могут быть перенесены вне кучи.
+//При создании таблица читается потоком, дальше фоновый поток забирает строки с updated_at новее прошлого опроса,
+//а раз в rescanInterval сверяет id и версии строк, чтобы найти удаленные строки и изменения, пропущенные опросом.
+//Данные отстают от БД на интервал опроса.
+public class UserReplica implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserReplica.class);
+    //столько строк применяется под одной блокировкой записи
+    private static final int APPLY_BATCH = 256;
+    private static final int NOT_FOUND = -1;
+
+    private final UserDAO userDAO;
+    private final ReplicaOptions options;
+    private final ScheduledExecutorService scheduler;
+
+    //пишет только поток обновления (под refreshLock), читатели идут оптимистично и при гонке берут readLock
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private long[] ids;
+    //версии строк (@Version): по ним сверка находит изменения, пропущенные опросом по updated_at
+    private long[] versions;
+    private int[] ages;
+    private int[] nameOffsets;
+    private int[] emailOffsets;
+    //хэши email по строкам: нужны, чтобы убрать строку из индекса без чтения email
+    private int[] emailHashes;
+    private int rows;
+    private PackedStrings strings;
+    private final IdIndex idIndex;
+    private final EmailIndex emailIndex;
+
+    private LocalDateTime pollCursor;
+    private long rescannedAt;
+    private volatile long refreshes;
+    private volatile long changedRows;
+    private volatile long deletedRows;
+    private volatile long rescans;
+
+    public UserReplica(UserDAO userDAO) {
+        this(userDAO, ReplicaOptions.defaults());
+    }
+
+    public UserReplica(UserDAO userDAO, ReplicaOptions options) {
+        this.userDAO = userDAO;
+        this.options = options;
+        int capacity = Math.max(options.getInitialCapacity(), 16);
+        ids = new long[capacity];
+        versions = new long[capacity];
+        ages = new int[capacity];
+        nameOffsets = new int[capacity];
+        emailOffsets = new int[capacity];
+        emailHashes = new int[capacity];
+        strings = new PackedStrings(capacity * 32);
+        idIndex = new IdIndex(capacity);
+        emailIndex = new EmailIndex(capacity);
+        load();
+        long interval = options.getPollInterval().toMillis();
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-replica-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+            HibernateSessionFactoryUtil.addShutdownTask(this);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public boolean containsId(long id) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            boolean found = idIndex.get(id) != NOT_FOUND;
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        } catch (RuntimeException e) {
+            //массивы заменили во время чтения; результат все равно отбрасывается
+        }
+        stamp = lock.readLock();
+        try {
+            return idIndex.get(id) != NOT_FOUND;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsEmail(String email) {
+        return idByEmail(email) != NOT_FOUND;
+    }
+
+    //-1, если такого email нет
+    public long idByEmail(String email) {
+        if (email == null) {
+            return NOT_FOUND;
+        }
+        int hash = PackedStrings.hash(email);
+        long stamp = lock.tryOptimisticRead();
+        try {
+            long id = idByEmail(email, hash);
+            if (lock.validate(stamp)) {
+                return id;
+            }
+        } catch (RuntimeException e) {
+            //см. containsId
+        }
+        stamp = lock.readLock();
+        try {
+            return idByEmail(email, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //-1, если такого id нет
+    public int ageById(long id) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            int age = ageOf(idIndex.get(id));
+            if (lock.validate(stamp)) {
+                return age;
+            }
+        } catch (RuntimeException e) {
+            //см. containsId
+        }
+        stamp = lock.readLock();
+        try {
+            return ageOf(idIndex.get(id));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //проход по одному столбцу ages без обращения к остальным данным
+    public int countByAgeBetween(int minAge, int maxAge) {
+        long stamp = lock.readLock();
+        try {
+            int[] ages = this.ages;
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                int age = ages[row];
+                if (age >= minAge && age <= maxAge) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //создает только сам UserSummary и две строки
+    public Optional<UserSummary> findSummaryById(long id) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            UserSummary summary = summaryOf(idIndex.get(id));
+            if (lock.validate(stamp)) {
+                return Optional.ofNullable(summary);
+            }
+        } catch (RuntimeException e) {
+            //см. containsId
+        }
+        stamp = lock.readLock();
+        try {
+            return Optional.ofNullable(summaryOf(idIndex.get(id)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Optional<UserSummary> findSummaryByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        int hash = PackedStrings.hash(email);
+        long stamp = lock.tryOptimisticRead();
+        try {
+            UserSummary summary = summaryOf(emailIndex.get(email, hash, strings, emailOffsets));
+            if (lock.validate(stamp)) {
+                return Optional.ofNullable(summary);
+            }
+        } catch (RuntimeException e) {
+            //см. containsId
+        }
+        stamp = lock.readLock();
+        try {
+            return Optional.ofNullable(summaryOf(emailIndex.get(email, hash, strings, emailOffsets)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return rows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public ReplicaStats getStats() {
+        long stamp = lock.readLock();
+        try {
+            //ids + versions + ages + два смещения строк + хэш email
+            long columnBytes = (long) ids.length * (Long.BYTES * 2 + Integer.BYTES * 4);
+            long stringBytes = strings.capacityBytes();
+            long indexBytes = idIndex.bytes() + emailIndex.bytes();
+            long totalBytes = columnBytes + stringBytes + indexBytes;
+            double bytesPerRow = rows == 0 ? 0 : (double) totalBytes / rows;
+            return new ReplicaStats(rows, columnBytes, stringBytes, strings.garbageBytes(), indexBytes, totalBytes,
+                    bytesPerRow, refreshes, changedRows, deletedRows, rescans);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //забирает строки, измененные с прошлого опроса (с запасом pollOverlap); при наступлении rescanInterval
+    //заодно сверяет id. Возвращает число примененных строк
+    public int refresh() {
+        refreshLock.lock();
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            int changed;
+            try (Stream<User> users = userDAO.streamChangedSince(pollCursor.minus(options.getPollOverlap()))) {
+                changed = apply(users.iterator());
+            }
+            pollCursor = startedAt;
+            refreshes++;
+            changedRows += changed;
+            if (System.nanoTime() - rescannedAt >= options.getRescanInterval().toNanos()) {
+                changed += rescan();
+            }
+            return changed;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    //сверяет id и версии с таблицей: убирает строки, которых в БД больше нет, и заново читает новые строки
+    //и строки с другой версией - то, что опрос пропустил. Возвращает число удаленных и перечитанных строк
+    public int rescan() {
+        refreshLock.lock();
+        try {
+            //пишет только этот поток, поэтому свои структуры он читает без блокировки
+            BitSet seen = new BitSet(rows);
+            List<Long> stale = new ArrayList<>();
+            long scanned = 0;
+            try (Stream<UserVersion> tableVersions = userDAO.streamAllVersions()) {
+                Iterator<UserVersion> iterator = tableVersions.iterator();
+                while (iterator.hasNext()) {
+                    UserVersion version = iterator.next();
+                    scanned++;
+                    int row = idIndex.get(version.id());
+                    if (row != NOT_FOUND) {
+                        seen.set(row);
+                    }
+                    if (row == NOT_FOUND || versions[row] != version.version()) {
+                        stale.add(version.id());
+                    }
+                }
+            }
+            rescannedAt = System.nanoTime();
+            rescans++;
+            //ошибка чтения выглядит как пустая таблица: без подтверждения через COUNT ничего не удаляем
+            if (scanned == 0 && rows > 0) {
+                Long count = userDAO.count();
+                if (count == null || count > 0) {
+                    LOGGER.warn("Сверка реплики пользователей не получила ни одного id, пропущена.\n");
+                    return 0;
+                }
+            }
+            int removed = removeUnseen(seen);
+            int loaded = 0;
+            if (!stale.isEmpty()) {
+                FoundUsers found = userDAO.findAllById(stale);
+                loaded = apply(found.users().iterator());
+            }
+            deletedRows += removed;
+            changedRows += loaded;
+            if (removed > 0 || loaded > 0) {
+                LOGGER.debug("Сверка реплики пользователей: удалено {}, перечитано {}.\n", removed, loaded);
+            }
+            return removed + loaded;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            HibernateSessionFactoryUtil.removeShutdownTask(this);
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void load() {
+        long started = System.nanoTime();
+        //курсор берется до чтения: все, что запишут во время загрузки, заберет первый опрос
+        pollCursor = LocalDateTime.now();
+        try (Stream<User> users = userDAO.streamAll()) {
+            apply(users.iterator());
+        }
+        rescannedAt = System.nanoTime();
+        LOGGER.info("Реплика пользователей загружена: {} строк за {} мс.\n",
+                rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            LOGGER.error("Ошибка обновления реплики пользователей.\n", e);
+        }
+    }
+
+    private int apply(Iterator<User> users) {
+        List<User> batch = new ArrayList<>(APPLY_BATCH);
+        int applied = 0;
+        while (users.hasNext()) {
+            batch.add(users.next());
+            if (batch.size() == APPLY_BATCH || !users.hasNext()) {
+                long stamp = lock.writeLock();
+                try {
+                    for (User user : batch) {
+                        upsert(user);
+                    }
+                    compactIfNeeded();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                applied += batch.size();
+                batch.clear();
+            }
+        }
+        return applied;
+    }
+
+    private int removeUnseen(BitSet seen) {
+        int removed = 0;
+        long stamp = lock.writeLock();
+        try {
+            //с конца: на место удаленной строки переезжает последняя, уже проверенная
+            for (int row = rows - 1; row >= 0; row--) {
+                if (!seen.get(row)) {
+                    remove(row);
+                    removed++;
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return removed;
+    }
+
+    private void upsert(User user) {
+        String name = user.getName() == null ? "" : user.getName();
+        String email = user.getEmail() == null ? "" : user.getEmail();
+        int row = idIndex.get(user.getId());
+        if (row == NOT_FOUND) {
+            row = rows;
+            ensureCapacity(row + 1);
+            ids[row] = user.getId();
+            versions[row] = user.getVersion();
+            ages[row] = user.getAge();
+            nameOffsets[row] = strings.add(name);
+            emailOffsets[row] = strings.add(email);
+            emailHashes[row] = PackedStrings.hash(email);
+            rows++;
+            idIndex.put(user.getId(), row);
+            emailIndex.put(email, emailHashes[row], row, strings, emailOffsets);
+            return;
+        }
+        versions[row] = user.getVersion();
+        ages[row] = user.getAge();
+        if (!strings.matches(nameOffsets[row], name)) {
+            strings.release(nameOffsets[row]);
+            nameOffsets[row] = strings.add(name);
+        }
+        if (!strings.matches(emailOffsets[row], email)) {
+            emailIndex.remove(emailHashes[row], row);
+            strings.release(emailOffsets[row]);
+            emailOffsets[row] = strings.add(email);
+            emailHashes[row] = PackedStrings.hash(email);
+            emailIndex.put(email, emailHashes[row], row, strings, emailOffsets);
+        }
+    }
+
+    //на место строки переносится последняя, чтобы столбцы оставались без дыр
+    private void remove(int row) {
+        int last = rows - 1;
+        idIndex.remove(ids[row]);
+        emailIndex.remove(emailHashes[row], row);
+        strings.release(nameOffsets[row]);
+        strings.release(emailOffsets[row]);
+        if (row != last) {
+            ids[row] = ids[last];
+            versions[row] = versions[last];
+            ages[row] = ages[last];
+            nameOffsets[row] = nameOffsets[last];
+            emailOffsets[row] = emailOffsets[last];
+            emailHashes[row] = emailHashes[last];
+            idIndex.put(ids[row], row);
+            emailIndex.move(emailHashes[row], last, row);
+        }
+        rows = last;
+    }
+
+    //переписывает живые строки в новый массив, когда мусора больше половины; хэши и индексы не меняются
+    private void compactIfNeeded() {
+        if (strings.garbageBytes() * 2 <= strings.usedBytes()) {
+            return;
+        }
+        PackedStrings compacted = new PackedStrings((int) (strings.usedBytes() - strings.garbageBytes()));
+        for (int row = 0; row < rows; row++) {
+            nameOffsets[row] = compacted.add(strings.get(nameOffsets[row]));
+            emailOffsets[row] = compacted.add(strings.get(emailOffsets[row]));
+        }
+        strings = compacted;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int grown = Math.max(ids.length * 2, capacity);
+            ids = Arrays.copyOf(ids, grown);
+            versions = Arrays.copyOf(versions, grown);
+            ages = Arrays.copyOf(ages, grown);
+            nameOffsets = Arrays.copyOf(nameOffsets, grown);
+            emailOffsets = Arrays.copyOf(emailOffsets, grown);
+            emailHashes = Arrays.copyOf(emailHashes, grown);
+        }
+    }
+
+    private long idByEmail(String email, int hash) {
+        int row = emailIndex.get(email, hash, strings, emailOffsets);
+        return row == NOT_FOUND ? NOT_FOUND : ids[row];
+    }
+
+    private int ageOf(int row) {
+        return row == NOT_FOUND ? NOT_FOUND : ages[row];
+    }
+
+    private UserSummary summaryOf(int row) {
+        if (row == NOT_FOUND) {
+            return null;
+        }
+        return new UserSummary(ids[row], strings.get(nameOffsets[row]), strings.get(emailOffsets[row]));
+    }
+}
@@ -0,0 +1,120 @@
+package services;
+
+import models.User;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.ConnectionPoolStats;
+import utils.HibernateSessionFactoryUtil;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+//Асинхронная обертка над UserService: каждая операция выполняется в отдельном виртуальном потоке.
+//Одновременно к БД обращается не больше maxConcurrency операций, остальные ждут, не занимая соединения пула.
+public class AsyncUserService implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncUserService.class);
+    private static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    private final UserService userService;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    //сервис на глобальной фабрике: лимит равен максимальному размеру ее пула соединений
+    public AsyncUserService() {
+        this(new UserService(), defaultMaxConcurrency(HibernateSessionFactoryUtil.getSessionFactory()));
+    }
+
+    //пул переданного сервиса неизвестен, поэтому лимит фиксированный, глобальная фабрика не создается
+    public AsyncUserService(UserService userService) {
+        this(userService, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public AsyncUserService(UserService userService, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency должен быть больше 0");
+        }
+        this.userService = userService;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public CompletableFuture<Optional<User>> getUserById(Long id) {
+        return submit(() -> userService.getUserById(id));
+    }
+
+    public CompletableFuture<Optional<User>> getUserByEmail(String email) {
+        return submit(() -> userService.getUserByEmail(email));
+    }
+
+    public CompletableFuture<Void> saveUser(User user) {
+        return submit(() -> {
+            userService.saveUser(user);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateUser(User user) {
+        return submit(() -> {
+            userService.updateUser(user);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteUser(Long id) {
+        return submit(() -> {
+            userService.deleteUser(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Long> getUsersCount() {
+        return submit(userService::getUsersCount);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return operation.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    //дожидается завершения уже запущенных операций
+    @Override
+    public void close() {
+        executor.close();
+        LOGGER.info("Асинхронный UserService остановлен.\n");
+    }
+
+    private static int defaultMaxConcurrency(SessionFactory sessionFactory) {
+        if (sessionFactory == null) {
+            return DEFAULT_MAX_CONCURRENCY;
+        }
+        ConnectionPoolStats stats = HibernateSessionFactoryUtil.getConnectionPoolStats(sessionFactory);
+        return stats == null ? DEFAULT_MAX_CONCURRENCY : stats.getMaxPoolSize();
+    }
+}
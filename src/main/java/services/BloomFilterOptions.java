@@ -0,0 +1,27 @@
+package services;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class BloomFilterOptions {
+    //на сколько email рассчитан фильтр; при большем числе доля ложных срабатываний растет
+    @Builder.Default
+    private final long expectedInsertions = 1_000_000;
+    //желаемая доля ложных срабатываний
+    @Builder.Default
+    private final double falsePositiveRate = 0.01;
+    //потолок памяти под битовый массив; если расчетный размер больше, фильтр урезается и реальная доля выше
+    @Builder.Default
+    private final long maxMemoryBytes = 16L * 1024 * 1024;
+    //удаленные email из фильтра не убираются: после стольких удалений (доля от вставленных) фильтр перестраивается
+    @Builder.Default
+    private final double rebuildAfterRemovedRatio = 0.2;
+
+    public static BloomFilterOptions defaults() {
+        return BloomFilterOptions.builder().build();
+    }
+}
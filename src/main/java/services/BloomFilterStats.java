@@ -0,0 +1,22 @@
+package services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//expectedFalsePositiveRate - расчетная доля при текущем числе вставок,
+//observedFalsePositives - ответы "возможно есть", которые БД опровергла
+@Getter
+@ToString
+@AllArgsConstructor
+public class BloomFilterStats {
+    private final long bitSize;
+    private final int hashFunctions;
+    private final long memoryBytes;
+    private final long insertions;
+    private final long removedSinceBuild;
+    private final double configuredFalsePositiveRate;
+    private final double expectedFalsePositiveRate;
+    private final long definiteMisses;
+    private final long observedFalsePositives;
+}
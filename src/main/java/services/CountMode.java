@@ -0,0 +1,11 @@
+package services;
+
+public enum CountMode {
+    //SELECT COUNT - точно, но читает всю таблицу
+    EXACT,
+    //оценка по статистике БД - мгновенно, но может отставать от реального числа строк
+    APPROXIMATE,
+    //счетчик в памяти, который сдвигают записи через UserService и периодически сверяют с COUNT;
+    //без UserService.enableCountCache() работает как EXACT
+    CACHED
+}
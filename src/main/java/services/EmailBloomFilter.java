@@ -0,0 +1,98 @@
+package services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Фильтр Блума по email: mightContain = false означает, что такого email точно нет.
+//Потокобезопасен без блокировок; k индексов получаются из двух 64-битных хешей (Kirsch-Mitzenmacher)
+class EmailBloomFilter {
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final double configuredFalsePositiveRate;
+    private final LongAdder insertions = new LongAdder();
+
+    EmailBloomFilter(BloomFilterOptions options) {
+        long expected = Math.max(1, options.getExpectedInsertions());
+        double fpp = options.getFalsePositiveRate();
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний должна быть в (0, 1): " + fpp);
+        }
+        long optimalBits = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long maxBits = Math.max(64, options.getMaxMemoryBytes() * Byte.SIZE);
+        long bits = Math.max(64, Math.min(optimalBits, maxBits));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expected * Math.log(2)));
+        this.configuredFalsePositiveRate = fpp;
+    }
+
+    void add(String email) {
+        long hash1 = hash(email, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(email, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        insertions.increment();
+    }
+
+    boolean mightContain(String email) {
+        long hash1 = hash(email, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(email, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBitSize() {
+        return bitSize;
+    }
+
+    int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    long getMemoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    long getInsertions() {
+        return insertions.sum();
+    }
+
+    double getConfiguredFalsePositiveRate() {
+        return configuredFalsePositiveRate;
+    }
+
+    //(1 - e^(-k * n / m))^k
+    double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashFunctions * (double) getInsertions() / bitSize), hashFunctions);
+    }
+
+    //FNV-1a по байтам UTF-8 с перемешиванием из MurmurHash3 (fmix64)
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
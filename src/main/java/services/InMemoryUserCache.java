@@ -0,0 +1,153 @@
+package services;
+
+import models.User;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+//LRU-кэш в памяти с ограничением по числу записей и TTL; индекс по email указывает на запись по id
+public class InMemoryUserCache implements UserCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private final LinkedHashMap<Long, Entry> byId;
+    private final Map<String, Long> idByEmail = new HashMap<>();
+    private long stamp;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long puts;
+    private long rejectedPuts;
+
+    public InMemoryUserCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    public InMemoryUserCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    InMemoryUserCache(int maxEntries, Duration ttl, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries должен быть больше 0");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized Optional<User> getById(long id) {
+        Entry entry = byId.get(id);
+        if (entry == null) {
+            misses++;
+            return Optional.empty();
+        }
+        if (isExpired(entry)) {
+            remove(id);
+            expirations++;
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(entry.user.copy());
+    }
+
+    @Override
+    public synchronized Optional<User> getByEmail(String email) {
+        Long id = idByEmail.get(email);
+        if (id == null) {
+            misses++;
+            return Optional.empty();
+        }
+        return getById(id);
+    }
+
+    @Override
+    public synchronized long stamp() {
+        return stamp;
+    }
+
+    @Override
+    public synchronized void putIfUnchanged(User user, long stamp) {
+        if (stamp != this.stamp) {
+            rejectedPuts++;
+            return;
+        }
+        remove(user.getId());
+        byId.put(user.getId(), new Entry(user.copy(), clock.millis() + ttlMillis));
+        idByEmail.put(user.getEmail(), user.getId());
+        puts++;
+        evictOverflow();
+    }
+
+    @Override
+    public synchronized void invalidate(long id) {
+        stamp++;
+        remove(id);
+    }
+
+    @Override
+    public synchronized void invalidateEmail(String email) {
+        stamp++;
+        Long id = idByEmail.get(email);
+        if (id != null) {
+            remove(id);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        stamp++;
+        byId.clear();
+        idByEmail.clear();
+    }
+
+    @Override
+    public synchronized UserCacheStats getStats() {
+        return new UserCacheStats(hits, misses, evictions, expirations, puts, rejectedPuts, byId.size());
+    }
+
+    private void remove(long id) {
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+            idByEmail.remove(entry.user.getEmail(), id);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Long, Entry>> eldest = byId.entrySet().iterator();
+        while (byId.size() > maxEntries && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            idByEmail.remove(entry.user.getEmail(), entry.user.getId());
+            evictions++;
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return clock.millis() >= entry.expiresAt;
+    }
+
+    private static class Entry {
+        private final User user;
+        private final long expiresAt;
+
+        private Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Число пользователей в памяти: записи через UserService сдвигают его сразу, а раз в reconcileInterval
+//оно сверяется с точным COUNT в фоне, чтобы исправить расхождение от записей в обход сервиса (импорт, другие узлы).
+//Запись, закоммиченная во время сверки, может посчитаться дважды - это исправит следующая сверка.
+class IncrementalUserCount {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalUserCount.class);
+
+    private final Supplier<Long> exactCount;
+    private final long reconcileIntervalNanos;
+    private final AtomicLong count = new AtomicLong();
+    //все сдвиги с момента создания: по разнице до и после запроса видно, что пришло во время сверки
+    private final AtomicLong adjustments = new AtomicLong();
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private volatile long reconciledAt;
+
+    IncrementalUserCount(Supplier<Long> exactCount, Duration reconcileInterval) {
+        this.exactCount = exactCount;
+        this.reconcileIntervalNanos = reconcileInterval.toNanos();
+        if (!reconcile()) {
+            throw new IllegalStateException("Не удалось получить количество пользователей");
+        }
+    }
+
+    //запускает фоновую сверку, если с прошлой прошло больше reconcileInterval
+    long get() {
+        if (System.nanoTime() - reconciledAt >= reconcileIntervalNanos) {
+            reconcileAsync();
+        }
+        return current();
+    }
+
+    long current() {
+        return count.get();
+    }
+
+    void added(long delta) {
+        if (delta != 0) {
+            adjustments.addAndGet(delta);
+            count.addAndGet(delta);
+        }
+    }
+
+    void removed(long delta) {
+        added(-delta);
+    }
+
+    void reconcileAsync() {
+        if (reconciling.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("user-count-reconcile").start(() -> {
+                try {
+                    reconcile();
+                } finally {
+                    reconciling.set(false);
+                }
+            });
+        }
+    }
+
+    private boolean reconcile() {
+        long before = adjustments.get();
+        Long exact = exactCount.get();
+        //при ошибке сверки продолжаем считать по сдвигам и повторим через интервал
+        reconciledAt = System.nanoTime();
+        if (exact == null) {
+            LOGGER.warn("Сверка количества пользователей не удалась.\n");
+            return false;
+        }
+        long corrected = exact + (adjustments.get() - before);
+        long drift = count.getAndSet(corrected) - corrected;
+        if (drift != 0) {
+            LOGGER.debug("Количество пользователей сверено: {}, расхождение {}.\n", corrected, drift);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package services;
+
+import dao.BatchResult;
+import dao.FoundUsers;
+import dao.Page;
+import dao.PageRequest;
+import dao.UpsertResult;
+import dao.UserDAO;
+import metrics.UserServiceMetrics;
+import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+//декоратор UserService, замеряющий каждую операцию целиком: латентность, ошибки и весь SQL ее вызовов DAO.
+//Имя операции совпадает с именем метода, updateUser(Long, Consumer) пишется как updateUserById.
+//Потоковые методы (stream*) не замеряются: чтение идет уже после возврата из них
+public class InstrumentedUserService extends UserService {
+    private final UserServiceMetrics metrics;
+
+    public InstrumentedUserService(UserDAO userDAO, UserServiceMetrics metrics) {
+        this(userDAO, UserCache.disabled(), UpdateRetryPolicy.defaults(), null, metrics);
+    }
+
+    public InstrumentedUserService(UserDAO userDAO, UserCache cache, UpdateRetryPolicy retryPolicy,
+                                   WriteBehindOptions writeBehind, UserServiceMetrics metrics) {
+        super(userDAO, cache, retryPolicy, writeBehind);
+        this.metrics = metrics;
+    }
+
+    public UserServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return metrics.record("existsByEmail", () -> super.existsByEmail(email));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return metrics.record("existsById", () -> super.existsById(id));
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return metrics.record("getUserById", () -> super.getUserById(id));
+    }
+
+    @Override
+    public FoundUsers getUsersByIds(Collection<Long> ids) {
+        return metrics.record("getUsersByIds", () -> super.getUsersByIds(ids));
+    }
+
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return metrics.record("getUserByEmail", () -> super.getUserByEmail(email));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return metrics.record("getAllUsers", super::getAllUsers);
+    }
+
+    @Override
+    public Page<User> searchUsers(UserFilter filter, PageRequest page) {
+        return metrics.record("searchUsers", () -> super.searchUsers(filter, page));
+    }
+
+    @Override
+    public Optional<UserSummary> getUserSummaryByEmail(String email) {
+        return metrics.record("getUserSummaryByEmail", () -> super.getUserSummaryByEmail(email));
+    }
+
+    @Override
+    public List<UserSummary> getAllUserSummaries() {
+        return metrics.record("getAllUserSummaries", super::getAllUserSummaries);
+    }
+
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        return metrics.record("getUsersPage", () -> super.getUsersPage(afterId, limit));
+    }
+
+    @Override
+    public boolean saveUser(User user) {
+        return metrics.record("saveUser", () -> super.saveUser(user));
+    }
+
+    @Override
+    public BatchResult saveUsers(Collection<User> users) {
+        return metrics.record("saveUsers", () -> super.saveUsers(users));
+    }
+
+    @Override
+    public void updateUser(User user) {
+        metrics.record("updateUser", () -> super.updateUser(user));
+    }
+
+    @Override
+    public Optional<User> updateUser(Long id, Consumer<User> changes) {
+        return metrics.record("updateUserById", () -> super.updateUser(id, changes));
+    }
+
+    @Override
+    public boolean patchUser(Long id, UserPatch changes) {
+        return metrics.record("patchUser", () -> super.patchUser(id, changes));
+    }
+
+    @Override
+    public UpsertResult upsertUsers(Collection<User> users) {
+        return metrics.record("upsertUsers", () -> super.upsertUsers(users));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        metrics.record("deleteUser", () -> super.deleteUser(id));
+    }
+
+    @Override
+    public int deleteUsers(Collection<Long> ids) {
+        return metrics.record("deleteUsers", () -> super.deleteUsers(ids));
+    }
+
+    @Override
+    public Long getUsersCount(CountMode mode) {
+        return metrics.record("getUsersCount", () -> super.getUsersCount(mode));
+    }
+}
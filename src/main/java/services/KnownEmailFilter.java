@@ -0,0 +1,136 @@
+package services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+//Фильтр Блума по всем email в таблице и его обслуживание: построение потоковым чтением,
+//добавление при записи, перестройка в фоне после заметного числа удалений.
+//Строящийся фильтр публикуется до начала чтения, и новые email пишутся в оба фильтра, пока он не заменит
+//текущий, поэтому email, записанные во время чтения, не теряются. Пока первое построение не закончено,
+//mightContain отвечает true (проверка идет в БД).
+class KnownEmailFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KnownEmailFilter.class);
+
+    private final BloomFilterOptions options;
+    private final Supplier<Stream<String>> emails;
+    //current == null - первое построение еще идет; меняет только поток построения (под флагом rebuilding)
+    private volatile Filters filters;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(true);
+    private final LongAdder removedSinceBuild = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder observedFalsePositives = new LongAdder();
+
+    private record Filters(EmailBloomFilter current, EmailBloomFilter building) {
+    }
+
+    //фильтр сразу можно публиковать и вызывать add; заполняет его load()
+    KnownEmailFilter(BloomFilterOptions options, Supplier<Stream<String>> emails) {
+        this.options = options;
+        this.emails = emails;
+        this.filters = new Filters(null, new EmailBloomFilter(options));
+    }
+
+    void load() {
+        try {
+            fill(filters.building());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private void fill(EmailBloomFilter filter) {
+        try (Stream<String> stream = emails.get()) {
+            stream.forEach(filter::add);
+        } catch (RuntimeException e) {
+            //без построенного фильтра остается прежний (или ответы true до первого построения)
+            filters = new Filters(filters.current(), null);
+            throw e;
+        }
+        //новый фильтр становится текущим и одновременно перестает быть строящимся: промежутка, в котором
+        //add писал бы только в отброшенный фильтр, нет
+        filters = new Filters(filter, null);
+        LOGGER.info("Фильтр email построен: {} email, {} байт.\n", filter.getInsertions(), filter.getMemoryBytes());
+    }
+
+    //false - email точно нет в таблице
+    boolean mightContain(String email) {
+        EmailBloomFilter current = filters.current();
+        if (current == null || current.mightContain(email)) {
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    void falsePositive() {
+        observedFalsePositives.increment();
+    }
+
+    //если фильтры сменились во время добавления, email добавляется и в новые: после возврата
+    //он есть в текущем фильтре, а фильтр, начатый позже, прочитает его из БД
+    void add(String email) {
+        if (email == null) {
+            return;
+        }
+        Filters seen;
+        do {
+            seen = filters;
+            if (seen.current() != null) {
+                seen.current().add(email);
+            }
+            if (seen.building() != null) {
+                seen.building().add(email);
+            }
+        } while (filters != seen);
+    }
+
+    void removed(long count) {
+        removedSinceBuild.add(count);
+        EmailBloomFilter current = filters.current();
+        if (current != null && removedSinceBuild.sum() > current.getInsertions() * options.getRebuildAfterRemovedRatio()) {
+            rebuildAsync();
+        }
+    }
+
+    void rebuildAsync() {
+        if (rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("email-filter-rebuild").start(this::rebuildNow);
+        }
+    }
+
+    //синхронная перестройка; false - перестройка уже идет
+    boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildNow();
+        return true;
+    }
+
+    private void rebuildNow() {
+        try {
+            long removed = removedSinceBuild.sum();
+            EmailBloomFilter next = new EmailBloomFilter(options);
+            filters = new Filters(filters.current(), next);
+            fill(next);
+            removedSinceBuild.add(-removed);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка перестройки фильтра email.", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    BloomFilterStats getStats() {
+        Filters state = filters;
+        EmailBloomFilter filter = state.current() != null ? state.current() : state.building();
+        return new BloomFilterStats(filter.getBitSize(), filter.getHashFunctions(), filter.getMemoryBytes(),
+                filter.getInsertions(), removedSinceBuild.sum(), filter.getConfiguredFalsePositiveRate(),
+                filter.getExpectedFalsePositiveRate(), definiteMisses.sum(), observedFalsePositives.sum());
+    }
+}
@@ -0,0 +1,43 @@
+package services;
+
+import models.User;
+
+import java.util.Optional;
+
+class NoOpUserCache implements UserCache {
+    static final NoOpUserCache INSTANCE = new NoOpUserCache();
+
+    private NoOpUserCache() {}
+
+    @Override
+    public Optional<User> getById(long id) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<User> getByEmail(String email) {
+        return Optional.empty();
+    }
+
+    @Override
+    public long stamp() {
+        return 0;
+    }
+
+    @Override
+    public void putIfUnchanged(User user, long stamp) {}
+
+    @Override
+    public void invalidate(long id) {}
+
+    @Override
+    public void invalidateEmail(String email) {}
+
+    @Override
+    public void clear() {}
+
+    @Override
+    public UserCacheStats getStats() {
+        return new UserCacheStats(0, 0, 0, 0, 0, 0, 0);
+    }
+}
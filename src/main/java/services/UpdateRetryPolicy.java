@@ -0,0 +1,36 @@
+package services;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+//повтор обновления при конфликте версий: экспоненциальная задержка со случайным разбросом,
+//чтобы конкурирующие писатели не повторяли попытки одновременно
+@Getter
+@Builder
+@ToString
+public class UpdateRetryPolicy {
+    //всего попыток, включая первую
+    @Builder.Default
+    private final int maxAttempts = 5;
+    @Builder.Default
+    private final Duration initialBackoff = Duration.ofMillis(5);
+    @Builder.Default
+    private final Duration maxBackoff = Duration.ofMillis(200);
+
+    public static UpdateRetryPolicy defaults() {
+        return UpdateRetryPolicy.builder().build();
+    }
+
+    //задержка перед попыткой attempt + 1: случайная в [0, min(maxBackoff, initialBackoff * 2^(attempt - 1))]
+    long backoffMillis(int attempt) {
+        long ceiling = initialBackoff.toMillis() << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoff.toMillis()) {
+            ceiling = maxBackoff.toMillis();
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
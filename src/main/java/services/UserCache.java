@@ -0,0 +1,30 @@
+package services;
+
+import models.User;
+
+import java.util.Optional;
+
+//Кэш пользователей уровня приложения. Реализация хранит и отдает копии, чтобы изменения у вызывающего не портили кэш.
+//Защита от устаревших данных: перед чтением из БД берется stamp(), а putIfUnchanged ничего не кладет,
+//если с тех пор была хоть одна инвалидация.
+public interface UserCache {
+    Optional<User> getById(long id);
+
+    Optional<User> getByEmail(String email);
+
+    long stamp();
+
+    void putIfUnchanged(User user, long stamp);
+
+    void invalidate(long id);
+
+    void invalidateEmail(String email);
+
+    void clear();
+
+    UserCacheStats getStats();
+
+    static UserCache disabled() {
+        return NoOpUserCache.INSTANCE;
+    }
+}
@@ -1,35 +1,226 @@
 package services;
 
+import dao.BatchResult;
+import dao.FoundUsers;
+import dao.InstrumentedUserDAO;
+import dao.Page;
+import dao.PageRequest;
+import dao.UpsertResult;
 import dao.UserDAO;
 import dao.UserDAOImpl;
+import metrics.UserDAOMetrics;
 import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
+import jakarta.persistence.OptimisticLockException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import utils.HibernateSessionFactoryUtil;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class UserService {
+//AutoCloseable из-за отложенной записи: close() записывает накопленные обновления
+public class UserService implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
 
     private final UserDAO userDAO;
+    private final UserCache cache;
+    private final UpdateRetryPolicy retryPolicy;
+    //null - отложенная запись выключена, обновления пишутся сразу
+    private final WriteBehindBuffer writeBehind;
+    //null - фильтр email выключен, existsByEmail всегда идет в БД
+    private volatile KnownEmailFilter emailFilter;
+    //null - счетчик выключен, getUsersCount() каждый раз выполняет COUNT
+    private volatile IncrementalUserCount userCounter;
+    private final LongAdder updateConflicts = new LongAdder();
 
     public UserService() {
-        this.userDAO = new UserDAOImpl();
+        this(new InstrumentedUserDAO(new UserDAOImpl(), UserDAOMetrics.getInstance()), new InMemoryUserCache());
     }
 
     //конструктор для mock-тестов и DI
     public UserService(UserDAO userDAO) {
+        this(userDAO, UserCache.disabled());
+    }
+
+    public UserService(UserDAO userDAO, UserCache cache) {
+        this(userDAO, cache, UpdateRetryPolicy.defaults());
+    }
+
+    public UserService(UserDAO userDAO, UserCache cache, UpdateRetryPolicy retryPolicy) {
+        this(userDAO, cache, retryPolicy, null);
+    }
+
+    //writeBehind != null включает отложенную запись updateUser(User); буфер дописывается
+    //и при HibernateSessionFactoryUtil.shutdownSession()
+    public UserService(UserDAO userDAO, UserCache cache, UpdateRetryPolicy retryPolicy, WriteBehindOptions writeBehind) {
         this.userDAO = userDAO;
+        this.cache = cache == null ? UserCache.disabled() : cache;
+        this.retryPolicy = retryPolicy == null ? UpdateRetryPolicy.defaults() : retryPolicy;
+        if (writeBehind != null) {
+            this.writeBehind = new WriteBehindBuffer(userDAO, writeBehind);
+            HibernateSessionFactoryUtil.addShutdownTask(this.writeBehind);
+        } else {
+            this.writeBehind = null;
+        }
+    }
+
+    //синхронно записывает накопленные обновления; возвращает число записанных пользователей
+    public int flush() {
+        return writeBehind == null ? 0 : writeBehind.flush();
+    }
+
+    //null, если отложенная запись выключена
+    public WriteBehindStats getWriteBehindStats() {
+        return writeBehind == null ? null : writeBehind.getStats();
+    }
+
+    @Override
+    public void close() {
+        if (writeBehind != null) {
+            HibernateSessionFactoryUtil.removeShutdownTask(writeBehind);
+            writeBehind.close();
+        }
+    }
+
+    //строит фильтр Блума по всем email потоковым чтением таблицы; дальше existsByEmail отвечает
+    //на заведомо отсутствующие email без обращения к БД. Фильтр публикуется до чтения, чтобы email,
+    //сохраненные во время построения, тоже в него попали
+    public BloomFilterStats enableEmailFilter(BloomFilterOptions options) {
+        KnownEmailFilter filter = new KnownEmailFilter(options,
+                () -> userDAO.streamAllSummaries().map(UserSummary::email));
+        emailFilter = filter;
+        try {
+            filter.load();
+        } catch (RuntimeException e) {
+            emailFilter = null;
+            throw e;
+        }
+        return filter.getStats();
+    }
+
+    //включает счетчик пользователей в памяти для getUsersCount(); точный COUNT выполняется
+    //сейчас и затем в фоне не чаще раза в reconcileInterval. Возвращает текущее количество
+    public long enableCountCache(Duration reconcileInterval) {
+        IncrementalUserCount counter = new IncrementalUserCount(userDAO::count, reconcileInterval);
+        userCounter = counter;
+        return counter.current();
+    }
+
+    //null, если фильтр email выключен
+    public BloomFilterStats getEmailFilterStats() {
+        KnownEmailFilter filter = emailFilter;
+        return filter == null ? null : filter.getStats();
+    }
+
+    public boolean existsByEmail(String email) {
+        try {
+            if (writeBehind != null && writeBehind.pendingByEmail(email).isPresent()) {
+                return true;
+            }
+            KnownEmailFilter filter = emailFilter;
+            if (filter != null && !filter.mightContain(email)) {
+                return false;
+            }
+            boolean exists = userDAO.existsByEmail(email);
+            if (!exists && filter != null) {
+                filter.falsePositive();
+            }
+            return exists;
+        } catch (Exception e) {
+            LOGGER.error("Ошибка проверки email: {}.", email, e);
+            return false;
+        }
+    }
+
+    public boolean existsById(Long id) {
+        try {
+            return (writeBehind != null && writeBehind.pending(id).isPresent()) || userDAO.existsById(id);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка проверки пользователя с id: {}.", id, e);
+            return false;
+        }
+    }
+
+    //добавляется и при ошибке записи: лишний email дает только ложное срабатывание, а не ложный промах
+    private void rememberEmail(String email) {
+        KnownEmailFilter filter = emailFilter;
+        if (filter != null) {
+            filter.add(email);
+        }
+    }
+
+    private void countAdded(long delta) {
+        IncrementalUserCount counter = userCounter;
+        if (counter != null) {
+            counter.added(delta);
+        }
+    }
+
+    private void forgetEmails(long count) {
+        KnownEmailFilter filter = emailFilter;
+        if (filter != null && count > 0) {
+            filter.removed(count);
+        }
+    }
+
+    //для записей в обход сервиса (importer.UserCsvImporter): email-ы вызывают до записи, как в saveUsers,
+    //число вставленных строк - после коммита, иначе фильтр email и счетчик в памяти отстанут от таблицы
+    public void registerExternalEmails(Collection<String> emails) {
+        emails.forEach(this::rememberEmail);
+    }
+
+    public void registerExternalInserts(long inserted) {
+        countAdded(inserted);
+    }
+
+    //прямые записи в БД не должны обгонять ожидающие отложенные обновления
+    private void flushPending() {
+        if (writeBehind != null && !writeBehind.isEmpty()) {
+            writeBehind.flush();
+        }
+    }
+
+    //сколько попыток обновления завершились конфликтом версий
+    public long getUpdateConflictCount() {
+        return updateConflicts.sum();
+    }
+
+    public UserCacheStats getCacheStats() {
+        return cache.getStats();
     }
 
     public Optional<User> getUserById(Long id) {
         Optional<User> user = Optional.empty();
         try {
+            if (writeBehind != null) {
+                user = writeBehind.pending(id);
+                if (user.isPresent()) {
+                    return user;
+                }
+            }
+            user = cache.getById(id);
+            if (user.isPresent()) {
+                LOGGER.debug("Пользователь с id {} получен из кэша.\n", id);
+                return user;
+            }
+            long stamp = cache.stamp();
             user = userDAO.findById(id);
+            user.ifPresent(found -> cache.putIfUnchanged(found, stamp));
             if (user.isPresent()) {
-                LOGGER.info("Пользователь с id {} успешно получен.\n", id);
+                LOGGER.debug("Пользователь с id {} успешно получен.\n", id);
             } else {
-                LOGGER.info("Пользователь с id {} не найден.\n", id);
+                LOGGER.debug("Пользователь с id {} не найден.\n", id);
             }
         } catch (Exception e) {
             LOGGER.error("Ошибка получения пользователя с ID: {}.", id, e);
@@ -37,14 +228,69 @@ public class UserService {
         return user;
     }
 
+    //вместо цикла getUserById: отложенные обновления и кэш приложения проверяются по каждому id,
+    //остальные id читаются из БД одним вызовом findAllById. Null при ошибке
+    public FoundUsers getUsersByIds(Collection<Long> ids) {
+        FoundUsers result = null;
+        try {
+            Collection<Long> distinctIds = new LinkedHashSet<>(ids);
+            Map<Long, User> found = new HashMap<>();
+            List<Long> toLoad = new ArrayList<>();
+            for (Long id : distinctIds) {
+                Optional<User> user = writeBehind != null ? writeBehind.pending(id) : Optional.empty();
+                if (user.isEmpty()) {
+                    user = cache.getById(id);
+                }
+                user.ifPresentOrElse(u -> found.put(id, u), () -> toLoad.add(id));
+            }
+            if (!toLoad.isEmpty()) {
+                long stamp = cache.stamp();
+                FoundUsers loaded = userDAO.findAllById(toLoad);
+                for (User user : loaded.users()) {
+                    cache.putIfUnchanged(user, stamp);
+                    found.put(user.getId(), user);
+                }
+            }
+            List<User> users = new ArrayList<>(found.size());
+            List<Long> missingIds = new ArrayList<>();
+            for (Long id : distinctIds) {
+                User user = found.get(id);
+                if (user != null) {
+                    users.add(user);
+                } else {
+                    missingIds.add(id);
+                }
+            }
+            result = new FoundUsers(users, missingIds);
+            LOGGER.debug("Получено {} пользователей, не найдено {}, из БД запрошено {}.\n",
+                    users.size(), missingIds.size(), toLoad.size());
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения пользователей по списку ID.", e);
+        }
+        return result;
+    }
+
     public Optional<User> getUserByEmail(String email) {
         Optional<User> user = Optional.empty();
         try {
+            if (writeBehind != null) {
+                user = writeBehind.pendingByEmail(email);
+                if (user.isPresent()) {
+                    return user;
+                }
+            }
+            user = cache.getByEmail(email);
+            if (user.isPresent()) {
+                LOGGER.debug("Пользователь с email {} получен из кэша.\n", email);
+                return user;
+            }
+            long stamp = cache.stamp();
             user = userDAO.findByEmail(email);
+            user.ifPresent(found -> cache.putIfUnchanged(found, stamp));
             if (user.isPresent()) {
-                LOGGER.info("Пользователь с email {} успешно получен.\n", email);
+                LOGGER.debug("Пользователь с email {} успешно получен.\n", email);
             } else {
-                LOGGER.info("Пользователь с email {} не найден.\n", email);
+                LOGGER.debug("Пользователь с email {} не найден.\n", email);
             }
         } catch (Exception e) {
             LOGGER.error("Ошибка получения пользователя с email: {}.", email, e);
@@ -57,9 +303,9 @@ public class UserService {
         try {
             users = userDAO.findAll();
             if (users != null) {
-                LOGGER.info("Список всех пользователей успешно получен.\n");
+                LOGGER.debug("Список всех пользователей успешно получен.\n");
             } else {
-                LOGGER.info("Список пользователей пуст.\n");
+                LOGGER.debug("Список пользователей пуст.\n");
             }
         } catch (Exception e) {
             LOGGER.error("Ошибка получения списка пользователей.", e);
@@ -67,38 +313,283 @@ public class UserService {
         return users;
     }
 
-    public void saveUser(User user) {
+    //поток нужно закрыть после чтения
+    public Stream<User> streamAllUsers() {
+        Stream<User> users = Stream.empty();
         try {
-            userDAO.save(user);
-            LOGGER.info("Пользователь {} успешно создан.\n", user);
+            users = userDAO.streamAll();
+            LOGGER.debug("Открыт поток чтения всех пользователей.\n");
+        } catch (Exception e) {
+            LOGGER.error("Ошибка потокового чтения пользователей.", e);
+        }
+        return users;
+    }
+
+    public Page<User> searchUsers(UserFilter filter, PageRequest page) {
+        Page<User> users = null;
+        try {
+            users = userDAO.search(filter, page);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка поиска пользователей.", e);
+        }
+        return users;
+    }
+
+    public Optional<UserSummary> getUserSummaryByEmail(String email) {
+        Optional<UserSummary> summary = Optional.empty();
+        try {
+            summary = userDAO.findSummaryByEmail(email);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения пользователя с email: {}.", email, e);
+        }
+        return summary;
+    }
+
+    public List<UserSummary> getAllUserSummaries() {
+        List<UserSummary> summaries = null;
+        try {
+            summaries = userDAO.findAllSummaries();
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения списка пользователей.", e);
+        }
+        return summaries;
+    }
+
+    //поток обязательно закрывать (try-with-resources)
+    public Stream<UserSummary> streamAllUserSummaries() {
+        Stream<UserSummary> summaries = Stream.empty();
+        try {
+            summaries = userDAO.streamAllSummaries();
+        } catch (Exception e) {
+            LOGGER.error("Ошибка потокового чтения пользователей.", e);
+        }
+        return summaries;
+    }
+
+    public List<User> getUsersPage(Long afterId, int limit) {
+        List<User> users = null;
+        try {
+            users = userDAO.findPage(afterId, limit);
+            LOGGER.debug("Получена страница пользователей после id {}.\n", afterId);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка получения страницы пользователей после id {}.", afterId, e);
+        }
+        return users;
+    }
+
+    //false - пользователь не сохранен (ошибка записана в лог)
+    public boolean saveUser(User user) {
+        boolean saved = false;
+        try {
+            //счетчик меняется только после подтвержденного коммита
+            saved = userDAO.save(user);
+            if (saved) {
+                countAdded(1);
+                LOGGER.debug("Пользователь {} успешно создан.\n", user);
+            }
         } catch (Exception e) {
             LOGGER.error("Ошибка создания пользователя.", e);
+        } finally {
+            cache.invalidateEmail(user.getEmail());
+            rememberEmail(user.getEmail());
         }
+        return saved;
     }
 
+    public BatchResult saveUsers(Collection<User> users) {
+        BatchResult result = null;
+        users.forEach(user -> rememberEmail(user.getEmail()));
+        try {
+            result = userDAO.saveAll(users);
+            countAdded(result.getSucceeded());
+            if (result.hasFailures()) {
+                LOGGER.warn("Сохранено {} из {} пользователей, ошибок в пачках: {}.\n",
+                        result.getSucceeded(), result.getRequested(), result.getFailures().size());
+            } else {
+                LOGGER.debug("Все {} пользователей успешно созданы.\n", result.getSucceeded());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка пакетного создания пользователей.", e);
+        }
+        return result;
+    }
+
+    //при отложенной записи только ставит обновление в буфер; если буфер заполнен, ждет места
+    //и бросает RejectedExecutionException, когда ожидание истекло
     public void updateUser(User user) {
+        rememberEmail(user.getEmail());
+        if (writeBehind != null) {
+            writeBehind.submit(user);
+            cache.invalidate(user.getId());
+            cache.invalidateEmail(user.getEmail());
+            LOGGER.debug("Обновление пользователя {} поставлено в очередь записи.\n", user);
+            return;
+        }
+        try {
+            if (userDAO.update(user)) {
+                LOGGER.debug("Пользователь {} успешно обновлен.\n", user);
+            } else {
+                LOGGER.warn("Пользователь {} не обновлен.\n", user);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка обновления пользователя.", e);
+        } finally {
+            //инвалидация после записи: чтения, начатые до коммита, не смогут положить в кэш старое значение
+            cache.invalidate(user.getId());
+            cache.invalidateEmail(user.getEmail());
+        }
+    }
+
+    //читает актуальную строку, применяет изменения и записывает; при конфликте версий повторяет
+    //с задержкой по retryPolicy. Пустой Optional - пользователь не найден, запись не удалась
+    //(например, нарушено ограничение) или попытки исчерпаны
+    public Optional<User> updateUser(Long id, Consumer<User> changes) {
+        flushPending();
+        for (int attempt = 1; attempt <= retryPolicy.getMaxAttempts(); attempt++) {
+            Optional<User> current = userDAO.findById(id);
+            if (current.isEmpty()) {
+                LOGGER.warn("Пользователь с id {} не найден.\n", id);
+                return Optional.empty();
+            }
+            User user = current.get();
+            String oldEmail = user.getEmail();
+            try {
+                changes.accept(user);
+                rememberEmail(user.getEmail());
+                if (!userDAO.update(user)) {
+                    LOGGER.warn("Пользователь с id {} не обновлен: ошибка записи.\n", id);
+                    return Optional.empty();
+                }
+                LOGGER.debug("Пользователь {} успешно обновлен с попытки {}.\n", user, attempt);
+                return Optional.of(user);
+            } catch (OptimisticLockException e) {
+                updateConflicts.increment();
+                if (attempt == retryPolicy.getMaxAttempts() || !backoff(attempt)) {
+                    break;
+                }
+            } catch (Exception e) {
+                LOGGER.error("Ошибка обновления пользователя.", e);
+                return Optional.empty();
+            } finally {
+                cache.invalidate(id);
+                cache.invalidateEmail(oldEmail);
+                cache.invalidateEmail(user.getEmail());
+            }
+        }
+        LOGGER.warn("Пользователь с id {} не обновлен: конфликт версий после всех попыток ({}).\n",
+                id, retryPolicy.getMaxAttempts());
+        return Optional.empty();
+    }
+
+    private boolean backoff(int attempt) {
         try {
-            userDAO.update(user);
-            LOGGER.info("Пользователь {} успешно обновлен.\n", user);
+            Thread.sleep(retryPolicy.backoffMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean patchUser(Long id, UserPatch changes) {
+        boolean updated = false;
+        try {
+            flushPending();
+            rememberEmail(changes.getEmail());
+            updated = userDAO.patch(id, changes);
+            if (updated) {
+                LOGGER.debug("Пользователь с id {} успешно обновлен.\n", id);
+            } else {
+                LOGGER.warn("Пользователь с id {} не обновлен.\n", id);
+            }
         } catch (Exception e) {
             LOGGER.error("Ошибка обновления пользователя.", e);
+        } finally {
+            cache.invalidate(id);
+            if (changes.getEmail() != null) {
+                cache.invalidateEmail(changes.getEmail());
+            }
         }
+        return updated;
+    }
+
+    //вставка или обновление по email за одно обращение к БД; null при ошибке
+    public UpsertResult upsertUsers(Collection<User> users) {
+        UpsertResult result = null;
+        try {
+            flushPending();
+            users.forEach(user -> rememberEmail(user.getEmail()));
+            result = userDAO.upsertAll(users);
+            //null - DAO откатил транзакцию, ничего не вставлено
+            if (result != null) {
+                countAdded(result.inserted());
+                LOGGER.debug("Upsert пользователей: {}.\n", result);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Ошибка upsert пользователей.", e);
+        } finally {
+            for (User user : users) {
+                cache.invalidate(user.getId());
+                cache.invalidateEmail(user.getEmail());
+            }
+        }
+        return result;
+    }
+
+    public UpsertResult upsertUser(User user) {
+        return upsertUsers(List.of(user));
     }
 
     public void deleteUser(Long id) {
         try {
-            userDAO.delete(id);
-            LOGGER.info("Пользователь с id {} успешно удален.\n", id);
+            if (writeBehind != null) {
+                writeBehind.discard(List.of(id));
+            }
+            if (userDAO.deleteById(id)) {
+                forgetEmails(1);
+                countAdded(-1);
+                LOGGER.debug("Пользователь с id {} успешно удален.\n", id);
+            }
         } catch (Exception e) {
             LOGGER.error("Ошибка удаления пользователя.", e);
+        } finally {
+            cache.invalidate(id);
         }
     }
 
+    public int deleteUsers(Collection<Long> ids) {
+        int deleted = 0;
+        try {
+            if (writeBehind != null) {
+                writeBehind.discard(ids);
+            }
+            deleted = userDAO.deleteAll(ids);
+            forgetEmails(deleted);
+            countAdded(-deleted);
+            LOGGER.debug("Удалено {} пользователей.\n", deleted);
+        } catch (Exception e) {
+            LOGGER.error("Ошибка пакетного удаления пользователей.", e);
+        } finally {
+            ids.forEach(cache::invalidate);
+        }
+        return deleted;
+    }
+
+    //при включенном enableCountCache() - из памяти, иначе точный COUNT
     public Long getUsersCount() {
+        return getUsersCount(CountMode.CACHED);
+    }
+
+    public Long getUsersCount(CountMode mode) {
         Long usersCount = null;
         try {
-            usersCount = userDAO.count();
-            LOGGER.info("В базе данных {} пользователей.", usersCount);
+            IncrementalUserCount counter = userCounter;
+            usersCount = switch (mode) {
+                case APPROXIMATE -> userDAO.approximateCount();
+                case CACHED -> counter != null ? counter.get() : userDAO.count();
+                case EXACT -> userDAO.count();
+            };
+            LOGGER.debug("В базе данных {} пользователей.", usersCount);
         } catch (Exception e) {
             LOGGER.error("Ошибка получения общего количества пользователей.", e);
         }
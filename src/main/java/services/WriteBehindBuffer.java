@@ -0,0 +1,328 @@
+package services;
+
+import dao.BatchResult;
+import dao.UserDAO;
+import models.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Отложенная запись обновлений: для каждого id хранится только последнее состояние пользователя,
+//фоновый поток записывает накопленное пачками по размеру или по таймеру. Пока запись не завершена,
+//чтения через pending видят ожидающее состояние. Запись проверяет версию, как и прямое обновление:
+//обновление, прочитанное до чужого изменения или удаления строки, отбрасывается как конфликт (stats.conflicts).
+class WriteBehindBuffer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final UserDAO userDAO;
+    private final WriteBehindOptions options;
+    private final ScheduledExecutorService scheduler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Long, User> pending = new LinkedHashMap<>();
+    private final Map<String, Long> pendingIdByEmail = new HashMap<>();
+    //пачка, которая сейчас пишется в БД
+    private Map<Long, User> inFlight = Map.of();
+    private boolean closed;
+
+    //flush выполняется одним потоком за раз, чтобы пачки одного id не обгоняли друг друга
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    //сколько flush подряд не смогли записать обновление id
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+    WriteBehindBuffer(UserDAO userDAO, WriteBehindOptions options) {
+        this.userDAO = userDAO;
+        this.options = options;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = options.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    //если буфер заполнен, ждет места не дольше offerTimeout, затем бросает RejectedExecutionException
+    void submit(User user) {
+        User snapshot = user.copy();
+        boolean flushNow;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Буфер отложенной записи закрыт.");
+            }
+            if (!pending.containsKey(snapshot.getId())) {
+                awaitSpace();
+            } else {
+                coalesced.increment();
+            }
+            User previous = pending.put(snapshot.getId(), snapshot);
+            if (previous != null) {
+                pendingIdByEmail.remove(previous.getEmail(), previous.getId());
+            }
+            pendingIdByEmail.put(snapshot.getEmail(), snapshot.getId());
+            submitted.increment();
+            flushNow = pending.size() >= options.getFlushSize();
+        } finally {
+            lock.unlock();
+        }
+        if (flushNow) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    private void awaitSpace() {
+        long nanos = options.getOfferTimeout().toNanos();
+        try {
+            while (pending.size() >= options.getMaxPending()) {
+                if (nanos <= 0) {
+                    throw new RejectedExecutionException("Буфер отложенной записи заполнен: " + pending.size());
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание места в буфере прервано.", e);
+        }
+    }
+
+    Optional<User> pending(long id) {
+        lock.lock();
+        try {
+            User user = pending.get(id);
+            if (user == null) {
+                user = inFlight.get(id);
+            }
+            return Optional.ofNullable(user).map(User::copy);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Optional<User> pendingByEmail(String email) {
+        lock.lock();
+        try {
+            Long id = pendingIdByEmail.get(email);
+            if (id != null) {
+                return Optional.of(pending.get(id).copy());
+            }
+            return inFlight.values().stream()
+                    .filter(user -> email.equals(user.getEmail()))
+                    .findFirst()
+                    .map(User::copy);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //убирает ожидающие обновления, например для удаленных пользователей
+    void discard(Collection<Long> ids) {
+        lock.lock();
+        try {
+            for (Long id : ids) {
+                failedAttempts.remove(id);
+                User user = pending.remove(id);
+                if (user != null) {
+                    pendingIdByEmail.remove(user.getEmail(), id);
+                }
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return pending.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //синхронно записывает все, что накоплено к моменту вызова; возвращает число записанных пользователей
+    int flush() {
+        flushLock.lock();
+        try {
+            List<User> batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                inFlight = new LinkedHashMap<>(pending);
+                batch = new ArrayList<>(inFlight.values());
+                pending.clear();
+                pendingIdByEmail.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            List<User> unwritten = List.of();
+            try {
+                BatchResult result = userDAO.updateAll(batch);
+                int succeeded = result.getSucceeded();
+                List<User> conflicted = new ArrayList<>(result.getConflicts());
+                if (result.hasFailures()) {
+                    unwritten = new ArrayList<>();
+                    succeeded += retryOneByOne(result, unwritten, conflicted);
+                }
+                written.add(succeeded);
+                dropConflicts(conflicted);
+                return succeeded;
+            } catch (RuntimeException e) {
+                unwritten = batch;
+                throw e;
+            } finally {
+                //inFlight снимается под той же блокировкой, что и возврат в очередь: чтения не видят промежутка
+                requeue(batch, unwritten);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    //пачка откатывается целиком из-за одной плохой строки: ее пользователи пишутся по одному,
+    //чтобы остальные не ждали повтора. Незаписанные добавляются в unwritten, конфликтные - в conflicted;
+    //возвращает число записанных
+    private int retryOneByOne(BatchResult result, List<User> unwritten, List<User> conflicted) {
+        int written = 0;
+        for (BatchResult.ChunkFailure failure : result.getFailures()) {
+            for (User user : failure.getUsers()) {
+                BatchResult single = userDAO.updateAll(List.of(user));
+                if (single.hasFailures()) {
+                    unwritten.add(user);
+                } else if (single.hasConflicts()) {
+                    conflicted.add(user);
+                } else {
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    //повтор конфликт не исправит: строку уже изменили или удалили, буферизованное состояние устарело
+    private void dropConflicts(List<User> conflicted) {
+        if (!conflicted.isEmpty()) {
+            conflicts.add(conflicted.size());
+            LOGGER.warn("Отложенная запись: обновления пользователей {} отброшены, строки изменены или удалены после чтения.\n",
+                    conflicted.stream().map(User::getId).toList());
+        }
+    }
+
+    //незаписанные обновления возвращаются в очередь до maxRetries раз; более новое обновление того же id,
+    //пришедшее во время записи, заменяет незаписанное. Очередь может ненадолго превысить maxPending
+    private void requeue(List<User> batch, List<User> unwritten) {
+        List<Long> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            inFlight = Map.of();
+            Set<User> failedUsers = Collections.newSetFromMap(new IdentityHashMap<>());
+            failedUsers.addAll(unwritten);
+            for (User user : batch) {
+                if (!failedUsers.contains(user)) {
+                    failedAttempts.remove(user.getId());
+                }
+            }
+            for (User user : unwritten) {
+                Long id = user.getId();
+                int attempts = failedAttempts.merge(id, 1, Integer::sum);
+                if (pending.containsKey(id)) {
+                    continue;
+                }
+                if (attempts > options.getMaxRetries()) {
+                    failedAttempts.remove(id);
+                    dropped.add(id);
+                    continue;
+                }
+                pending.put(id, user);
+                pendingIdByEmail.put(user.getEmail(), id);
+                retried.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!unwritten.isEmpty()) {
+            LOGGER.warn("Отложенная запись: не записано {} из {} пользователей, повторно в очереди {}.\n",
+                    unwritten.size(), batch.size(), unwritten.size() - dropped.size());
+        }
+        if (!dropped.isEmpty()) {
+            failed.add(dropped.size());
+            LOGGER.error("Отложенная запись: обновления пользователей {} отброшены после {} повторов.\n",
+                    dropped, options.getMaxRetries());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.error("Ошибка отложенной записи пользователей.", e);
+        }
+    }
+
+    WriteBehindStats getStats() {
+        lock.lock();
+        try {
+            return new WriteBehindStats(submitted.sum(), coalesced.sum(), written.sum(), retried.sum(), failed.sum(),
+                    conflicts.sum(), pending.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //новые обновления не принимаются, накопленное записывается
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Фоновая запись не завершилась за 30 секунд.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //незаписанное возвращается в очередь, но не больше maxRetries раз, поэтому цикл конечен
+        int drained = 0;
+        while (!isEmpty()) {
+            drained += flush();
+        }
+        LOGGER.info("Буфер отложенной записи закрыт, записано при закрытии: {}.\n", drained);
+    }
+}
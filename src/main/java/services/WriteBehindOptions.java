@@ -0,0 +1,32 @@
+package services;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Getter
+@Builder
+@ToString
+public class WriteBehindOptions {
+    //сколько разных пользователей может ждать записи; повторное обновление того же id места не занимает
+    @Builder.Default
+    private final int maxPending = 10_000;
+    //при стольких ожидающих пользователях запись начинается, не дожидаясь таймера
+    @Builder.Default
+    private final int flushSize = 500;
+    @Builder.Default
+    private final Duration flushInterval = Duration.ofSeconds(1);
+    //сколько вызывающий поток ждет места в заполненном буфере, прежде чем получить отказ
+    @Builder.Default
+    private final Duration offerTimeout = Duration.ofSeconds(5);
+    //сколько следующих flush повторяют обновление, которое не удалось записать; после этого оно
+    //отбрасывается и попадает в WriteBehindStats.failed
+    @Builder.Default
+    private final int maxRetries = 3;
+
+    public static WriteBehindOptions defaults() {
+        return WriteBehindOptions.builder().build();
+    }
+}
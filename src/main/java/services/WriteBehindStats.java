@@ -0,0 +1,21 @@
+package services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//счетчики отложенной записи: coalesced - обновления, слитые с уже ожидающим обновлением того же id,
+//retried - возвращения в очередь после ошибки записи, failed - отброшенные после всех повторов,
+//conflicts - отброшенные из-за конфликта версий
+@Getter
+@ToString
+@AllArgsConstructor
+public class WriteBehindStats {
+    private final long submitted;
+    private final long coalesced;
+    private final long written;
+    private final long retried;
+    private final long failed;
+    private final long conflicts;
+    private final int pending;
+}
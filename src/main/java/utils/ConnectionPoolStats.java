@@ -0,0 +1,23 @@
+package utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+//снимок состояния пула соединений, время получения соединения в микросекундах
+@Getter
+@ToString
+@AllArgsConstructor
+public class ConnectionPoolStats {
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int threadsAwaitingConnection;
+    private final int maxPoolSize;
+    private final long acquireCount;
+    private final long acquireTimeoutCount;
+    private final long acquireP50Micros;
+    private final long acquireP95Micros;
+    private final long acquireP99Micros;
+    private final long acquireMaxMicros;
+}
@@ -1,15 +1,31 @@
 package utils;
 
 import models.User;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class HibernateSessionFactoryUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(HibernateSessionFactoryUtil.class);
+    //следующий блок id начнется не ниже max(id) + 1; последовательность только сдвигается вперед,
+    //поэтому повторный запуск и одновременный старт нескольких узлов безопасны
+    private static final String ALIGN_USER_SEQUENCE = "SELECT setval('users_seq', GREATEST("
+            + "(SELECT COALESCE(MAX(id), 0) FROM users) + " + User.ID_ALLOCATION_SIZE + ", "
+            + "(SELECT last_value FROM users_seq)))";
     private static SessionFactory sessionFactory;
+    //выполняются перед закрытием фабрики, например дописывают буферы отложенной записи
+    private static final List<AutoCloseable> shutdownTasks = new CopyOnWriteArrayList<>();
 
     public HibernateSessionFactoryUtil() {}
 
@@ -18,8 +34,21 @@ public class HibernateSessionFactoryUtil {
             try {
                 Configuration configuration = new Configuration().configure();
                 configuration.addAnnotatedClass(User.class);
+                int sampleRate = Integer.parseInt(configuration.getProperties()
+                        .getProperty(SamplingStatementInspector.SAMPLE_RATE, "0").trim());
+                if (sampleRate > 0) {
+                    configuration.setStatementInspector(new SamplingStatementInspector(sampleRate));
+                }
                 StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties());
-                sessionFactory = configuration.buildSessionFactory(builder.build());
+                SessionFactory factory = configuration.buildSessionFactory(builder.build());
+                try {
+                    alignUserSequence(factory);
+                } catch (RuntimeException e) {
+                    //без сдвига последовательности вставки упадут на занятых id - фабрику не отдаем
+                    factory.close();
+                    throw e;
+                }
+                sessionFactory = factory;
                 LOGGER.info("Hibernate SessionFactory успешно создана.\n");
             } catch (Exception e) {
                 LOGGER.error("Ошибка создания Hibernate SessionFactory\n", e);
@@ -28,7 +57,74 @@ public class HibernateSessionFactoryUtil {
         return sessionFactory;
     }
 
+    //миграция с IDENTITY на users_seq: hbm2ddl создает последовательность с 1 и в заполненной таблице
+    //выданные id совпали бы с существующими. Только для PostgreSQL - H2 в тестах создает схему заново
+    public static void alignUserSequence(SessionFactory sessionFactory) {
+        if (!isPostgreSQL(sessionFactory)) {
+            return;
+        }
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(ALIGN_USER_SEQUENCE);
+                    }
+                });
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    public static ConnectionPoolStats getConnectionPoolStats() {
+        return getConnectionPoolStats(getSessionFactory());
+    }
+
+    //null, если фабрика работает не через PooledConnectionProvider
+    public static ConnectionPoolStats getConnectionPoolStats(SessionFactory sessionFactory) {
+        ConnectionProvider provider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider instanceof PooledConnectionProvider) {
+            return ((PooledConnectionProvider) provider).getStats();
+        }
+        return null;
+    }
+
+    public static boolean isPostgreSQL(SessionFactory sessionFactory) {
+        return sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()
+                instanceof PostgreSQLDialect;
+    }
+
+    public static int getIntProperty(SessionFactory sessionFactory, String name, int defaultValue) {
+        Object value = sessionFactory.getProperties().get(name);
+        if (value == null || value.toString().isBlank()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.toString().trim());
+    }
+
+    public static void addShutdownTask(AutoCloseable task) {
+        shutdownTasks.add(task);
+    }
+
+    public static void removeShutdownTask(AutoCloseable task) {
+        shutdownTasks.remove(task);
+    }
+
     public static void shutdownSession() {
+        for (AutoCloseable task : shutdownTasks) {
+            try {
+                task.close();
+            } catch (Exception e) {
+                LOGGER.error("Ошибка завершающей задачи перед закрытием SessionFactory.\n", e);
+            }
+        }
+        shutdownTasks.clear();
         if (sessionFactory != null && !sessionFactory.isClosed()) {
             sessionFactory.close();
             LOGGER.info("Hibernate SessionFactory закрыта.\n");
@@ -0,0 +1,174 @@
+package utils;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import metrics.SqlTracker;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//пул соединений на HikariCP вместо встроенного пула Hibernate, с метриками получения соединений
+public class PooledConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledConnectionProvider.class);
+
+    public static final String MIN_SIZE = "hibernate.pool.min_size";
+    public static final String MAX_SIZE = "hibernate.pool.max_size";
+    public static final String IDLE_TIMEOUT = "hibernate.pool.idle_timeout";
+    public static final String MAX_LIFETIME = "hibernate.pool.max_lifetime";
+    public static final String CONNECTION_TIMEOUT = "hibernate.pool.connection_timeout";
+    public static final String VALIDATION_TIMEOUT = "hibernate.pool.validation_timeout";
+    public static final String LEAK_DETECTION_THRESHOLD = "hibernate.pool.leak_detection_threshold";
+    public static final String POOL_NAME = "hibernate.pool.name";
+
+    private static final String LEGACY_DRIVER = "hibernate.connection.driver_class";
+    private static final String LEGACY_URL = "hibernate.connection.url";
+    private static final String LEGACY_USER = "hibernate.connection.username";
+    private static final String LEGACY_PASSWORD = "hibernate.connection.password";
+
+    private static final int DEFAULT_MIN_SIZE = 2;
+    private static final int DEFAULT_MAX_SIZE = 10;
+
+    private HikariDataSource dataSource;
+    private final Histogram acquireTimes = new ConcurrentHistogram(3);
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+
+    @Override
+    public void configure(Map<String, Object> settings) {
+        HikariConfig config = new HikariConfig();
+        //hibernate.connection.* из старых конфигураций читаются по строковым ключам: их константы устарели
+        String driver = setting(settings, AvailableSettings.JAKARTA_JDBC_DRIVER, LEGACY_DRIVER);
+        if (driver != null) {
+            config.setDriverClassName(driver);
+        }
+        config.setJdbcUrl(setting(settings, AvailableSettings.JAKARTA_JDBC_URL, LEGACY_URL));
+        config.setUsername(setting(settings, AvailableSettings.JAKARTA_JDBC_USER, LEGACY_USER));
+        config.setPassword(setting(settings, AvailableSettings.JAKARTA_JDBC_PASSWORD, LEGACY_PASSWORD));
+
+        String autocommit = setting(settings, AvailableSettings.AUTOCOMMIT);
+        if (autocommit != null) {
+            config.setAutoCommit(Boolean.parseBoolean(autocommit));
+        }
+
+        int maxSize = intSetting(settings, MAX_SIZE, DEFAULT_MAX_SIZE);
+        config.setMaximumPoolSize(maxSize);
+        config.setMinimumIdle(Math.min(intSetting(settings, MIN_SIZE, DEFAULT_MIN_SIZE), maxSize));
+        config.setIdleTimeout(longSetting(settings, IDLE_TIMEOUT, TimeUnit.MINUTES.toMillis(10)));
+        config.setMaxLifetime(longSetting(settings, MAX_LIFETIME, TimeUnit.MINUTES.toMillis(30)));
+        config.setConnectionTimeout(longSetting(settings, CONNECTION_TIMEOUT, TimeUnit.SECONDS.toMillis(30)));
+        config.setValidationTimeout(longSetting(settings, VALIDATION_TIMEOUT, TimeUnit.SECONDS.toMillis(5)));
+        config.setLeakDetectionThreshold(longSetting(settings, LEAK_DETECTION_THRESHOLD, 0));
+        String poolName = setting(settings, POOL_NAME);
+        if (poolName != null) {
+            config.setPoolName(poolName);
+        }
+
+        dataSource = new HikariDataSource(config);
+        LOGGER.info("Пул соединений {} создан: min={}, max={}.\n",
+                dataSource.getPoolName(), config.getMinimumIdle(), config.getMaximumPoolSize());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            //внутри metrics.SqlTracker.begin() соединение оборачивается для подсчета SQL
+            return SqlTracker.track(dataSource.getConnection());
+        } catch (SQLTransientConnectionException e) {
+            acquireTimeouts.incrementAndGet();
+            throw e;
+        } finally {
+            acquireTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    public ConnectionPoolStats getStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return new ConnectionPoolStats(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                dataSource.getMaximumPoolSize(),
+                acquireTimes.getTotalCount(),
+                acquireTimeouts.get(),
+                acquireTimes.getValueAtPercentile(50),
+                acquireTimes.getValueAtPercentile(95),
+                acquireTimes.getValueAtPercentile(99),
+                acquireTimes.getMaxValue());
+    }
+
+    public void resetStats() {
+        acquireTimes.reset();
+        acquireTimeouts.set(0);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+            LOGGER.info("Пул соединений {} закрыт.\n", dataSource.getPoolName());
+        }
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isAssignableFrom(getClass()) || unwrapType.isAssignableFrom(HikariDataSource.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isAssignableFrom(getClass())) {
+            return (T) this;
+        }
+        if (unwrapType.isAssignableFrom(HikariDataSource.class) || DataSource.class.equals(unwrapType)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    private static String setting(Map<String, Object> settings, String... names) {
+        for (String name : names) {
+            Object value = settings.get(name);
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    private static int intSetting(Map<String, Object> settings, String name, int defaultValue) {
+        String value = setting(settings, name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longSetting(Map<String, Object> settings, String name, long defaultValue) {
+        String value = setting(settings, name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,39 @@
+package utils;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//логирует каждый N-й подготовленный SQL-запрос вместо show_sql; медленные запросы логирует сам Hibernate
+//(hibernate.log_slow_query, логгер org.hibernate.SQL_SLOW)
+public class SamplingStatementInspector implements StatementInspector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SamplingStatementInspector.class);
+
+    public static final String SAMPLE_RATE = "hibernate.sql_log.sample_rate";
+
+    private final int sampleRate;
+    private final AtomicLong statements = new AtomicLong();
+
+    //sampleRate = 0 - выборка выключена, 1 - каждый запрос
+    public SamplingStatementInspector(int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Частота выборки не может быть отрицательной: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        long count = statements.incrementAndGet();
+        if (sampleRate > 0 && count % sampleRate == 0) {
+            LOGGER.info("SQL (1 из {}): {}", sampleRate, sql);
+        }
+        return sql;
+    }
+
+    public long getStatementCount() {
+        return statements.get();
+    }
+}
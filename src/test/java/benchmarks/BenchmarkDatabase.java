@@ -0,0 +1,53 @@
+package benchmarks;
+
+import dao.BatchResult;
+import dao.UserDAO;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import utils.EmbeddedDatabase;
+import utils.PooledConnectionProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//H2 в памяти с теми же пулом и батчингом, что и в hibernate.cfg.xml
+final class BenchmarkDatabase {
+    static final int POOL_SIZE = 16;
+
+    private BenchmarkDatabase() {}
+
+    static SessionFactory create(String name, boolean secondLevelCache) {
+        return create(name, secondLevelCache, Map.of());
+    }
+
+    static SessionFactory create(String name, boolean secondLevelCache, Map<String, Object> extraSettings) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(Environment.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName());
+        settings.put(PooledConnectionProvider.MIN_SIZE, String.valueOf(POOL_SIZE));
+        settings.put(PooledConnectionProvider.MAX_SIZE, String.valueOf(POOL_SIZE));
+        settings.put(Environment.STATEMENT_BATCH_SIZE, "50");
+        settings.put(Environment.ORDER_INSERTS, "true");
+        settings.put(Environment.USE_SECOND_LEVEL_CACHE, String.valueOf(secondLevelCache));
+        settings.putAll(extraSettings);
+        return EmbeddedDatabase.sessionFactory(name + "_" + System.nanoTime(), settings);
+    }
+
+    static String email(String prefix, long index) {
+        return prefix + index + "@mail.ru";
+    }
+
+    static long[] seed(UserDAO userDAO, int rows, String prefix) {
+        List<User> users = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            users.add(new User("User" + i, email(prefix, i), 18 + i % 60));
+        }
+        BatchResult result = userDAO.saveAll(users);
+        if (result.hasFailures()) {
+            throw new IllegalStateException("Не удалось заполнить таблицу: " + result);
+        }
+        return users.stream().mapToLong(User::getId).toArray();
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import dao.FoundUsers;
+import dao.UserDAO;
+import dao.UserDAOImpl;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Загрузка lookupSize случайных пользователей: цикл findById (сессия и запрос на каждый id)
+//против одного findAllById (IN-списки по hibernate.default_batch_fetch_size, кэш второго уровня - первым).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class UserDAOMultiLoadBenchmark {
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"10", "100", "1000"})
+    private int lookupSize;
+
+    @Param({"false", "true"})
+    private boolean secondLevelCache;
+
+    private SessionFactory sessionFactory;
+    private UserDAO userDAO;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("multiload", secondLevelCache);
+        userDAO = new UserDAOImpl(sessionFactory);
+        ids = BenchmarkDatabase.seed(userDAO, TABLE_SIZE, "multiload");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private List<Long> randomIds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> lookup = new ArrayList<>(lookupSize);
+        for (int i = 0; i < lookupSize; i++) {
+            lookup.add(ids[random.nextInt(TABLE_SIZE)]);
+        }
+        return lookup;
+    }
+
+    @Benchmark
+    public void findById_loop(Blackhole blackhole) {
+        for (Long id : randomIds()) {
+            blackhole.consume(userDAO.findById(id));
+        }
+    }
+
+    @Benchmark
+    public FoundUsers findAllById() {
+        return userDAO.findAllById(randomIds());
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import dao.UserDAO;
+import dao.UserDAOImpl;
+import models.User;
+import models.UserSummary;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//Чтение при разных размерах таблицы, с кэшем второго уровня и без; *_4threads - те же операции из 4 потоков.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class UserDAOReadBenchmark {
+    private static final String PREFIX = "read";
+
+    @Param({"1000", "10000", "100000"})
+    private int tableSize;
+
+    @Param({"false", "true"})
+    private boolean secondLevelCache;
+
+    private SessionFactory sessionFactory;
+    private UserDAO userDAO;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("read", secondLevelCache);
+        userDAO = new UserDAOImpl(sessionFactory);
+        ids = BenchmarkDatabase.seed(userDAO, tableSize, PREFIX);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(tableSize);
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return userDAO.findById(ids[randomIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> findById_4threads() {
+        return findById();
+    }
+
+    @Benchmark
+    public Optional<User> findByEmail() {
+        return userDAO.findByEmail(BenchmarkDatabase.email(PREFIX, randomIndex()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> findByEmail_4threads() {
+        return findByEmail();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<User> findAll() {
+        return userDAO.findAll();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<User> findAll_4threads() {
+        return findAll();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<UserSummary> findAllSummaries() {
+        return userDAO.findAllSummaries();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long streamAllSummaries() {
+        try (Stream<UserSummary> summaries = userDAO.streamAllSummaries()) {
+            return summaries.count();
+        }
+    }
+
+    @Benchmark
+    public Long count() {
+        return userDAO.count();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Long count_4threads() {
+        return count();
+    }
+}
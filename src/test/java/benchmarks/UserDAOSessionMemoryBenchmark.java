@@ -0,0 +1,78 @@
+package benchmarks;
+
+import dao.UserDAOImpl;
+import models.User;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Память, которую сессия удерживает на одну загруженную сущность: обычная сессия хранит снимок
+//для dirty checking, сессия только для чтения - нет. Результат - счетчик retainedBytesPerEntity,
+//JMH суммирует его по итерациям измерения.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogback.configurationFile=logback-benchmark.xml", "-Xmx2g"})
+public class UserDAOSessionMemoryBenchmark {
+    private static final int TABLE_SIZE = 100_000;
+
+    public enum SessionMode { READ_WRITE, READ_ONLY }
+
+    @Param({"READ_WRITE", "READ_ONLY"})
+    private SessionMode sessionMode;
+
+    private SessionFactory sessionFactory;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MemoryCounters {
+        public long retainedBytesPerEntity;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("memory", false);
+        BenchmarkDatabase.seed(new UserDAOImpl(sessionFactory), TABLE_SIZE, "memory");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private Session openSession() {
+        if (sessionMode == SessionMode.READ_WRITE) {
+            return sessionFactory.openSession();
+        }
+        Session session = sessionFactory.withOptions().flushMode(FlushMode.MANUAL).openSession();
+        session.setDefaultReadOnly(true);
+        return session;
+    }
+
+    @Benchmark
+    public int loadAll(MemoryCounters counters) {
+        long before = usedHeapAfterGc();
+        try (Session session = openSession()) {
+            List<User> users = session.createSelectionQuery("FROM User", User.class).getResultList();
+            //список сущностей и контекст персистентности еще достижимы
+            counters.retainedBytesPerEntity = (usedHeapAfterGc() - before) / users.size();
+            return users.size();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
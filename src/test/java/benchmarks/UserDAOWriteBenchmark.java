@@ -0,0 +1,116 @@
+package benchmarks;
+
+import dao.UserDAO;
+import dao.UserDAOImpl;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Запись; каждый поток обновляет свою строку, чтобы мерить стоимость операции, а не конкуренцию за строку
+//(конкуренция - в UserServiceContentionBenchmark). update сохраняет новую версию в объекте потока.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class UserDAOWriteBenchmark {
+    private static final int TABLE_SIZE = 10_000;
+    private static final int DELETE_BATCH = 2_000;
+    private static final int MAX_THREADS = 4;
+
+    private SessionFactory sessionFactory;
+    private UserDAO userDAO;
+    private long[] ids;
+    private final AtomicLong emailSequence = new AtomicLong();
+    private final AtomicInteger threadSequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("write", true);
+        userDAO = new UserDAOImpl(sessionFactory);
+        ids = BenchmarkDatabase.seed(userDAO, TABLE_SIZE, "write");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @State(Scope.Thread)
+    public static class UpdateState {
+        User user;
+
+        @Setup(Level.Trial)
+        public void setUp(UserDAOWriteBenchmark benchmark) {
+            int thread = benchmark.threadSequence.getAndIncrement();
+            user = benchmark.userDAO.findById(benchmark.ids[thread % benchmark.ids.length]).orElseThrow();
+        }
+    }
+
+    //строки под удаление создаются до каждой итерации и в замер не входят
+    @State(Scope.Benchmark)
+    public static class DeleteState {
+        final Queue<Long> ids = new ConcurrentLinkedQueue<>();
+
+        @Setup(Level.Iteration)
+        public void setUp(UserDAOWriteBenchmark benchmark) {
+            ids.clear();
+            long iteration = benchmark.emailSequence.incrementAndGet();
+            for (long id : BenchmarkDatabase.seed(benchmark.userDAO, DELETE_BATCH * MAX_THREADS, "delete" + iteration + "_")) {
+                ids.add(id);
+            }
+        }
+    }
+
+    @Benchmark
+    public User save() {
+        User user = new User("Bench", BenchmarkDatabase.email("save", emailSequence.incrementAndGet()), 30);
+        userDAO.save(user);
+        return user;
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public User save_4threads() {
+        return save();
+    }
+
+    @Benchmark
+    public User update(UpdateState state) {
+        state.user.setAge(state.user.getAge() % 100 + 1);
+        userDAO.update(state.user);
+        return state.user;
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public User update_4threads(UpdateState state) {
+        return update(state);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = DELETE_BATCH)
+    @Measurement(iterations = 5, batchSize = DELETE_BATCH)
+    public void delete(DeleteState state) {
+        userDAO.delete(state.ids.poll());
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = DELETE_BATCH)
+    @Measurement(iterations = 5, batchSize = DELETE_BATCH)
+    public void delete_4threads(DeleteState state) {
+        userDAO.delete(state.ids.poll());
+    }
+}
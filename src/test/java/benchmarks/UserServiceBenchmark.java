@@ -0,0 +1,119 @@
+package benchmarks;
+
+import dao.UserDAOImpl;
+import models.User;
+import models.UserPatch;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import services.InMemoryUserCache;
+import services.UserCache;
+import services.UserService;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Те же чтения и записи через UserService: разница с UserDAO*Benchmark - стоимость слоя сервиса
+//(кэш приложения, инвалидация, повтор при конфликте версий). Каждый поток пишет в свою строку.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class UserServiceBenchmark {
+    private static final int TABLE_SIZE = 10_000;
+    private static final String PREFIX = "service";
+
+    @Param({"false", "true"})
+    private boolean applicationCache;
+
+    private SessionFactory sessionFactory;
+    private UserService userService;
+    private long[] ids;
+    private final AtomicLong emailSequence = new AtomicLong();
+    private final AtomicInteger threadSequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("service", true);
+        UserDAOImpl userDAO = new UserDAOImpl(sessionFactory);
+        ids = BenchmarkDatabase.seed(userDAO, TABLE_SIZE, PREFIX);
+        userService = new UserService(userDAO, applicationCache ? new InMemoryUserCache() : UserCache.disabled());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        userService.close();
+        sessionFactory.close();
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        long id;
+
+        @Setup(Level.Trial)
+        public void setUp(UserServiceBenchmark benchmark) {
+            id = benchmark.ids[benchmark.threadSequence.getAndIncrement() % benchmark.ids.length];
+        }
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(TABLE_SIZE);
+    }
+
+    @Benchmark
+    public Optional<User> getUserById() {
+        return userService.getUserById(ids[randomIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> getUserById_4threads() {
+        return getUserById();
+    }
+
+    @Benchmark
+    public Optional<User> getUserByEmail() {
+        return userService.getUserByEmail(BenchmarkDatabase.email(PREFIX, randomIndex()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> getUserByEmail_4threads() {
+        return getUserByEmail();
+    }
+
+    @Benchmark
+    public User saveUser() {
+        User user = new User("Bench", BenchmarkDatabase.email("save", emailSequence.incrementAndGet()), 30);
+        userService.saveUser(user);
+        return user;
+    }
+
+    //SELECT актуальной строки + UPDATE с проверкой версии
+    @Benchmark
+    public Optional<User> updateUser(WriterState state) {
+        return userService.updateUser(state.id, user -> user.setAge(user.getAge() % 100 + 1));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> updateUser_4threads(WriterState state) {
+        return updateUser(state);
+    }
+
+    //один UPDATE без чтения
+    @Benchmark
+    public boolean patchUser(WriterState state) {
+        return userService.patchUser(state.id, UserPatch.builder().age(ThreadLocalRandom.current().nextInt(18, 80)).build());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean patchUser_4threads(WriterState state) {
+        return patchUser(state);
+    }
+}
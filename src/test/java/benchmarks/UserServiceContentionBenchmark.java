@@ -0,0 +1,89 @@
+package benchmarks;
+
+import dao.UserDAOImpl;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import services.UpdateRetryPolicy;
+import services.UserCache;
+import services.UserService;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Обновление с оптимистической блокировкой и повтором при конфликте: все писатели на одной строке
+//против каждого на своей. Счетчик failed - обновления, не прошедшие за все попытки.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class UserServiceContentionBenchmark {
+    private static final int MAX_THREADS = 8;
+
+    public enum RowMode { SAME_ROW, DIFFERENT_ROWS }
+
+    @Param({"SAME_ROW", "DIFFERENT_ROWS"})
+    private RowMode rowMode;
+
+    private SessionFactory sessionFactory;
+    private UserService userService;
+    private long[] ids;
+    private final AtomicInteger threadSequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.create("contention", true);
+        UserDAOImpl userDAO = new UserDAOImpl(sessionFactory);
+        ids = BenchmarkDatabase.seed(userDAO, MAX_THREADS, "contention");
+        userService = new UserService(userDAO, UserCache.disabled(), UpdateRetryPolicy.defaults());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writer {
+        long id;
+        public long failed;
+
+        @Setup(Level.Trial)
+        public void setUp(UserServiceContentionBenchmark benchmark) {
+            int thread = benchmark.threadSequence.getAndIncrement();
+            id = benchmark.rowMode == RowMode.SAME_ROW ? benchmark.ids[0] : benchmark.ids[thread % MAX_THREADS];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<User> update_1thread(Writer writer) {
+        Optional<User> user = userService.updateUser(writer.id, u -> u.setAge(u.getAge() % 100 + 1));
+        if (user.isEmpty()) {
+            writer.failed++;
+        }
+        return user;
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Optional<User> update_2threads(Writer writer) {
+        return update_1thread(writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> update_4threads(Writer writer) {
+        return update_1thread(writer);
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public Optional<User> update_8threads(Writer writer) {
+        return update_1thread(writer);
+    }
+}
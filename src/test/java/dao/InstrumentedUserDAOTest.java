@@ -0,0 +1,178 @@
+package dao;
+
+import metrics.HibernateStatisticsSnapshot;
+import metrics.OperationSnapshot;
+import metrics.UserDAOMetrics;
+import metrics.UserServiceMetrics;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+import services.InstrumentedUserService;
+import services.UserService;
+import utils.EmbeddedDatabase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedUserDAOTest {
+    private static final String OBJECT_NAME = "HibernateExample:type=UserDAOMetrics,name=test";
+
+    private static SessionFactory sessionFactory;
+    private UserDAOMetrics metrics;
+    private InstrumentedUserDAO userDAO;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("metrics", Map.of(Environment.GENERATE_STATISTICS, "true"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        metrics = new UserDAOMetrics(sessionFactory);
+        metrics.setSqlTracking(true);
+        userDAO = new InstrumentedUserDAO(new UserDAOImpl(sessionFactory), metrics);
+
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM User").executeUpdate();
+            session.getTransaction().commit();
+        }
+        metrics.reset();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Должен считать вызовы и латентность каждого метода.")
+    void record_CountsCallsPerOperation() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        for (int i = 0; i < 5; i++) {
+            userDAO.findById(ivan.getId());
+        }
+        userDAO.count();
+
+        OperationSnapshot findById = metrics.getOperation("findById");
+        assertEquals(5, findById.getCount());
+        assertEquals(0, findById.getErrors());
+        assertTrue(findById.getP50Micros() <= findById.getP99Micros());
+        assertTrue(findById.getP99Micros() <= findById.getP999Micros());
+        assertTrue(findById.getP999Micros() <= findById.getMaxMicros());
+        assertTrue(findById.getThroughputPerSecond() > 0);
+        assertEquals(1, metrics.getOperation("save").getCount());
+        assertEquals(1.0, metrics.getOperation("count").getMeanStatements());
+        assertEquals(1, metrics.getOperation("count").getMaxStatements());
+        assertEquals(1.0, metrics.getOperation("count").getMeanRows());
+        assertEquals(1, metrics.getOperation("count").getCount());
+        assertNull(metrics.getOperation("delete"));
+    }
+
+    @Test
+    @DisplayName("Без включения подсчета SQL вызовы DAO не должны оборачиваться.")
+    void record_SqlTrackingOptIn() {
+        metrics.setSqlTracking(false);
+        userDAO.count();
+
+        assertEquals(1, metrics.getOperation("count").getCount());
+        assertEquals(0, metrics.getOperation("count").getMaxStatements());
+    }
+
+    @Test
+    @DisplayName("Должен считать SQL и ошибки на операцию UserService целиком.")
+    void serviceMetrics_TrackSqlPerOperation() {
+        metrics.setSqlTracking(false);
+        UserServiceMetrics serviceMetrics = new UserServiceMetrics();
+        UserService userService = new InstrumentedUserService(userDAO, serviceMetrics);
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        assertTrue(userService.saveUser(ivan));
+
+        assertTrue(userService.updateUser(ivan.getId(), user -> user.setAge(28)).isPresent());
+        assertFalse(userService.saveUser(new User("Petr", "ivan@mail.ru", 30)));
+
+        OperationSnapshot update = serviceMetrics.getOperation("updateUserById");
+        assertEquals(1, update.getCount());
+        assertEquals(0, update.getErrors());
+        //в операцию входит весь SQL ее вызовов DAO: внутри нее соединения уже обернуты, и DAO тоже его видит
+        assertTrue(update.getMaxStatements() > 0);
+        assertEquals(metrics.getOperation("findById").getMaxStatements() + metrics.getOperation("update").getMaxStatements(),
+                update.getMaxStatements());
+        assertEquals(2, serviceMetrics.getOperation("saveUser").getCount());
+        assertEquals(1, serviceMetrics.getOperation("saveUser").getErrors());
+    }
+
+    @Test
+    @DisplayName("Должен считать ошибки, выброшенные из DAO.")
+    void record_CountsErrors() {
+        UserDAO failing = Mockito.mock(UserDAO.class);
+        Mockito.when(failing.count()).thenThrow(new IllegalStateException("Ошибка БД."));
+        InstrumentedUserDAO instrumented = new InstrumentedUserDAO(failing, metrics);
+
+        assertThrows(IllegalStateException.class, instrumented::count);
+
+        assertEquals(1, metrics.getOperation("count").getErrors());
+    }
+
+    @Test
+    @DisplayName("Должен считать ошибки, которые UserDAOImpl перехватывает и не пробрасывает.")
+    void record_CountsSwallowedErrors() {
+        userDAO.save(new User("Ivan", "ivan@mail.ru", 27));
+        User duplicate = new User("Petr", "ivan@mail.ru", 30);
+
+        userDAO.save(duplicate);
+        assertFalse(userDAO.deleteById(-1L));
+        userDAO.findByEmail("ivan@mail.ru");
+
+        assertEquals(2, metrics.getOperation("save").getCount());
+        assertEquals(1, metrics.getOperation("save").getErrors());
+        //отсутствующая строка - не ошибка
+        assertEquals(0, metrics.getOperation("deleteById").getErrors());
+        assertEquals(0, metrics.getOperation("findByEmail").getErrors());
+    }
+
+    @Test
+    @DisplayName("Должен отдавать статистику Hibernate.")
+    void hibernateStatistics_Available() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        userDAO.count();
+
+        HibernateStatisticsSnapshot statistics = metrics.getHibernateStatistics();
+
+        assertTrue(statistics.isStatisticsEnabled());
+        assertEquals(1, statistics.getEntityInserts());
+        assertTrue(statistics.getStatementsPrepared() >= 2);
+        assertTrue(statistics.getFlushes() >= 1);
+    }
+
+    @Test
+    @DisplayName("Должен публиковать метрики через JMX.")
+    void mbean_ExposesMetrics() throws Exception {
+        metrics.registerMBean(OBJECT_NAME);
+        userDAO.count();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        TabularData operations = (TabularData) server.getAttribute(name, "Operations");
+        CompositeData row = operations.get(new Object[]{"count"});
+        CompositeData count = (CompositeData) row.get("value");
+        CompositeData hibernate = (CompositeData) server.getAttribute(name, "HibernateStatistics");
+
+        assertEquals(1L, count.get("count"));
+        assertTrue((Long) hibernate.get("statementsPrepared") >= 1);
+
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, metrics.getOperation("count").getCount());
+        server.unregisterMBean(name);
+    }
+}
@@ -0,0 +1,286 @@
+package dao;
+
+import models.User;
+import models.UserPatch;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import services.UpdateRetryPolicy;
+import services.UserCache;
+import services.UserService;
+import services.WriteBehindOptions;
+import utils.EmbeddedDatabase;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDAOImplCacheTest {
+
+    private static SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+    private Statistics statistics;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("cache", Map.of(
+                Environment.USE_SECOND_LEVEL_CACHE, "true",
+                Environment.USE_QUERY_CACHE, "true",
+                Environment.GENERATE_STATISTICS, "true"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new UserDAOImpl(sessionFactory);
+
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM User").executeUpdate();
+            session.getTransaction().commit();
+        }
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Повторный поиск по id не должен выполнять SQL.")
+    void findById_RepeatedLookupHitsCache() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        userDAO.findById(ivan.getId());
+
+        long statements = statistics.getPrepareStatementCount();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Ivan", userDAO.findById(ivan.getId()).orElseThrow().getName());
+        }
+
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 10);
+    }
+
+    @Test
+    @DisplayName("После смены email пакетным обновлением поиск по старому email не должен находить пользователя.")
+    void updateAll_EvictsNaturalIdCache() {
+        User ivan = new User("Ivan", "old@x.ru", 27);
+        userDAO.save(ivan);
+        assertTrue(userDAO.findByEmail("old@x.ru").isPresent());
+
+        ivan.setEmail("new@x.ru");
+        assertFalse(userDAO.updateAll(List.of(ivan)).hasFailures());
+
+        assertTrue(userDAO.findByEmail("old@x.ru").isEmpty());
+        assertEquals(ivan.getId(), userDAO.findByEmail("new@x.ru").orElseThrow().getId());
+    }
+
+    @Test
+    @DisplayName("Пакетное обновление не должно сбрасывать кэш natural id для неизменившихся email.")
+    void updateAll_KeepsUnchangedNaturalIds() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        User petr = new User("Petr", "petr@mail.ru", 30);
+        userDAO.save(ivan);
+        userDAO.save(petr);
+        userDAO.findByEmail("ivan@mail.ru");
+        userDAO.findByEmail("petr@mail.ru");
+
+        ivan.setEmail("vanya@mail.ru");
+        petr.setName("Petya");
+        assertFalse(userDAO.updateAll(List.of(ivan, petr)).hasFailures());
+        statistics.clear();
+
+        assertEquals(petr.getId(), userDAO.findByEmail("petr@mail.ru").orElseThrow().getId());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        assertTrue(userDAO.findByEmail("ivan@mail.ru").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Смена email через отложенную запись не должна оставлять старый email в кэше natural id.")
+    void writeBehindFlush_EvictsNaturalIdCache() {
+        User ivan = new User("Ivan", "old@x.ru", 27);
+        userDAO.save(ivan);
+        assertTrue(userDAO.findByEmail("old@x.ru").isPresent());
+
+        try (UserService service = new UserService(userDAO, UserCache.disabled(), UpdateRetryPolicy.defaults(),
+                WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build())) {
+            User renamed = ivan.copy();
+            renamed.setEmail("new@x.ru");
+            service.updateUser(renamed);
+            assertEquals(1, service.flush());
+        }
+
+        assertTrue(userDAO.findByEmail("old@x.ru").isEmpty());
+        assertEquals("new@x.ru", userDAO.findByEmail("new@x.ru").orElseThrow().getEmail());
+    }
+
+    @Test
+    @DisplayName("Повторный поиск по email не должен выполнять SQL.")
+    void findByEmail_RepeatedLookupHitsNaturalIdCache() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        userDAO.findByEmail("ivan@mail.ru");
+
+        long statements = statistics.getPrepareStatementCount();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ivan.getId(), userDAO.findByEmail("ivan@mail.ru").orElseThrow().getId());
+        }
+
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getNaturalIdCacheHitCount() >= 10);
+    }
+
+    @Test
+    @DisplayName("Попадание в кэш сущностей и natural id не должно брать соединение из пула.")
+    void lookup_CacheHitAcquiresNoConnection() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        userDAO.findById(ivan.getId());
+        userDAO.findByEmail("ivan@mail.ru");
+
+        long connects = statistics.getConnectCount();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(userDAO.findById(ivan.getId()).isPresent());
+            assertTrue(userDAO.findByEmail("ivan@mail.ru").isPresent());
+            assertEquals(1, userDAO.findAllById(List.of(ivan.getId())).users().size());
+        }
+
+        assertEquals(connects, statistics.getConnectCount());
+    }
+
+    @Test
+    @DisplayName("Обновление должно обновлять кэш по id и по email.")
+    void update_InvalidatesCache() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        User cached = userDAO.findByEmail("ivan@mail.ru").orElseThrow();
+
+        cached.setName("Vanya");
+        cached.setEmail("vanya@mail.ru");
+        userDAO.update(cached);
+
+        assertEquals("Vanya", userDAO.findById(ivan.getId()).orElseThrow().getName());
+        assertFalse(userDAO.findByEmail("ivan@mail.ru").isPresent());
+        assertEquals("Vanya", userDAO.findByEmail("vanya@mail.ru").orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Удаление должно убирать пользователя из кэша.")
+    void delete_InvalidatesCache() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        userDAO.findById(ivan.getId());
+        userDAO.findByEmail("ivan@mail.ru");
+
+        userDAO.delete(ivan.getId());
+
+        Optional<User> byId = userDAO.findById(ivan.getId());
+        Optional<User> byEmail = userDAO.findByEmail("ivan@mail.ru");
+        assertFalse(byId.isPresent());
+        assertFalse(byEmail.isPresent());
+    }
+
+    @Test
+    @DisplayName("Удаление не должно сбрасывать кэш остальных пользователей.")
+    void delete_KeepsOtherUsersCached() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        User petr = new User("Petr", "petr@mail.ru", 30);
+        User anna = new User("Anna", "anna@mail.ru", 25);
+        List.of(ivan, petr, anna).forEach(userDAO::save);
+        for (User user : List.of(ivan, petr, anna)) {
+            userDAO.findById(user.getId());
+            userDAO.findByEmail(user.getEmail());
+        }
+
+        assertTrue(userDAO.deleteById(ivan.getId()));
+        assertEquals(1, userDAO.deleteAll(List.of(anna.getId())));
+        statistics.clear();
+
+        assertEquals("Petr", userDAO.findById(petr.getId()).orElseThrow().getName());
+        assertEquals(petr.getId(), userDAO.findByEmail("petr@mail.ru").orElseThrow().getId());
+        //по id и по email: email разрешается через кэш natural id, сущность берется из кэша второго уровня
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(userDAO.findByEmail("ivan@mail.ru").isEmpty());
+        assertTrue(userDAO.findById(anna.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Частичное обновление должно убирать из кэша только изменившегося пользователя.")
+    void patch_KeepsOtherUsersCached() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        User petr = new User("Petr", "petr@mail.ru", 30);
+        List.of(ivan, petr).forEach(userDAO::save);
+        for (User user : List.of(ivan, petr)) {
+            userDAO.findById(user.getId());
+            userDAO.findByEmail(user.getEmail());
+        }
+
+        assertTrue(userDAO.patch(ivan.getId(), UserPatch.builder().age(28).build()));
+        assertTrue(userDAO.patch(ivan.getId(), UserPatch.builder().email("vanya@mail.ru").build()));
+        statistics.clear();
+
+        assertEquals("Petr", userDAO.findById(petr.getId()).orElseThrow().getName());
+        assertEquals(petr.getId(), userDAO.findByEmail("petr@mail.ru").orElseThrow().getId());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        User patched = userDAO.findById(ivan.getId()).orElseThrow();
+        assertEquals(28, patched.getAge());
+        assertEquals("vanya@mail.ru", patched.getEmail());
+        assertTrue(userDAO.findByEmail("ivan@mail.ru").isEmpty());
+        assertEquals(ivan.getId(), userDAO.findByEmail("vanya@mail.ru").orElseThrow().getId());
+    }
+
+    @Test
+    @DisplayName("Повторный count должен браться из кэша запросов и сбрасываться при изменении таблицы.")
+    void count_CachedUntilTableChanges() {
+        userDAO.save(new User("Ivan", "ivan@mail.ru", 27));
+        assertEquals(1L, userDAO.count());
+
+        long statements = statistics.getPrepareStatementCount();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1L, userDAO.count());
+        }
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() >= 10);
+
+        userDAO.save(new User("Petr", "petr@mail.ru", 30));
+        assertEquals(2L, userDAO.count());
+        userDAO.upsertAll(List.of(new User("Anna", "anna@mail.ru", 25)));
+        assertEquals(3L, userDAO.count());
+        userDAO.deleteAll(List.of(userDAO.findByEmail("anna@mail.ru").orElseThrow().getId()));
+        assertEquals(2L, userDAO.count());
+    }
+
+    @Test
+    @DisplayName("Поиск по списку id должен брать закэшированных пользователей из кэша и читать из БД только остальных.")
+    void findAllById_ChecksCacheFirst() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        User petr = new User("Petr", "petr@mail.ru", 30);
+        userDAO.save(ivan);
+        userDAO.save(petr);
+        sessionFactory.getCache().evictAllRegions();
+        userDAO.findById(ivan.getId());
+        statistics.clear();
+
+        FoundUsers first = userDAO.findAllById(List.of(petr.getId(), ivan.getId()));
+
+        assertEquals(List.of("Petr", "Ivan"), first.users().stream().map(User::getName).toList());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+
+        long statements = statistics.getPrepareStatementCount();
+        FoundUsers second = userDAO.findAllById(List.of(ivan.getId(), petr.getId()));
+        assertTrue(second.allFound());
+        assertEquals(statements, statistics.getPrepareStatementCount());
+    }
+}
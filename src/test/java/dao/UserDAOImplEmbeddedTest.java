@@ -0,0 +1,459 @@
+package dao;
+
+import jakarta.persistence.OptimisticLockException;
+import metrics.SqlStats;
+import metrics.SqlTracker;
+import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.junit.jupiter.api.*;
+import utils.EmbeddedDatabase;
+import utils.MaxStatements;
+import utils.SqlStatementGuard;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//тесты методов DAO, которым не нужен PostgreSQL: работают на H2 без Docker
+class UserDAOImplEmbeddedTest {
+    private static final int BATCH_SIZE = 10;
+
+    private static SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("dao", Map.of(
+                Environment.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE),
+                Environment.GENERATE_STATISTICS, "true"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new UserDAOImpl(sessionFactory);
+
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM User").executeUpdate();
+            session.getTransaction().commit();
+        }
+        sessionFactory.getStatistics().clear();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    private static List<User> users(int count, String prefix) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("User" + i, prefix + i + "@mail.ru", 20 + i % 50));
+        }
+        return users;
+    }
+
+    @Test
+    @DisplayName("Должен пакетно сохранять всех пользователей.")
+    void saveAll_Success() {
+        List<User> users = users(95, "batch");
+
+        BatchResult result = userDAO.saveAll(users);
+
+        assertFalse(result.hasFailures());
+        assertEquals(95, result.getSucceeded());
+        assertEquals(95L, userDAO.count());
+        assertEquals(95L, users.stream().mapToLong(User::getId).distinct().count());
+        assertTrue(sessionFactory.getStatistics().getTransactionCount() <= 10 + 1);
+    }
+
+    @Test
+    @DisplayName("Должен сообщать об упавшей пачке и сохранять остальные.")
+    void saveAll_ReportsFailedChunk() {
+        List<User> users = users(30, "chunk");
+        users.get(15).setEmail(users.get(14).getEmail());
+
+        BatchResult result = userDAO.saveAll(users);
+
+        assertEquals(20, result.getSucceeded());
+        assertEquals(10, result.getFailed());
+        assertEquals(1, result.getFailures().size());
+        BatchResult.ChunkFailure failure = result.getFailures().get(0);
+        assertEquals(1, failure.getChunkIndex());
+        assertEquals(10, failure.getFirstIndex());
+        assertTrue(failure.getUsers().stream().allMatch(u -> u.getId() == 0));
+        assertEquals(20L, userDAO.count());
+    }
+
+    @Test
+    @DisplayName("Должен возвращать пустой результат для пустой коллекции.")
+    void saveAll_Empty() {
+        BatchResult result = userDAO.saveAll(List.of());
+
+        assertEquals(0, result.getRequested());
+        assertFalse(result.hasFailures());
+    }
+
+    @Test
+    @DisplayName("Должен отдавать всех пользователей потоком.")
+    void streamAll_Success() {
+        userDAO.saveAll(users(25, "stream"));
+
+        List<String> emails;
+        try (Stream<User> stream = userDAO.streamAll()) {
+            emails = stream.map(User::getEmail).collect(Collectors.toList());
+        }
+
+        assertEquals(25, emails.size());
+        assertTrue(emails.contains("stream0@mail.ru"));
+        assertTrue(emails.contains("stream24@mail.ru"));
+    }
+
+    @Test
+    @DisplayName("Должен отдавать пустой поток для пустой таблицы.")
+    void streamAll_Empty() {
+        try (Stream<User> stream = userDAO.streamAll()) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Должен постранично обходить таблицу по возрастанию id.")
+    void findPage_Success() {
+        userDAO.saveAll(users(25, "page"));
+
+        List<User> all = new ArrayList<>();
+        Long afterId = null;
+        List<User> page;
+        do {
+            page = userDAO.findPage(afterId, 10);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 10);
+
+        assertEquals(25, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId());
+        }
+        assertTrue(userDAO.findPage(afterId, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Вне PostgreSQL приблизительное количество должно совпадать с точным.")
+    void approximateCount_FallsBackToExact() {
+        userDAO.saveAll(users(12, "approx"));
+
+        assertEquals(12L, userDAO.approximateCount());
+        assertEquals(userDAO.count(), userDAO.approximateCount());
+    }
+
+    @Test
+    @DisplayName("Должен удалять пользователя одним запросом и сообщать, был ли он найден.")
+    void deleteById_Success() {
+        List<User> users = users(3, "delete");
+        userDAO.saveAll(users);
+        sessionFactory.getStatistics().clear();
+
+        assertTrue(userDAO.deleteById(users.get(1).getId()));
+        assertFalse(userDAO.deleteById(users.get(1).getId()));
+
+        assertEquals(0, sessionFactory.getStatistics().getEntityLoadCount());
+        assertEquals(2L, userDAO.count());
+        assertTrue(userDAO.findById(users.get(1).getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Должен пакетно удалять пользователей по списку id, пропуская дубликаты и отсутствующие.")
+    void deleteAll_Success() {
+        List<User> users = users(1500, "deleteAll");
+        userDAO.saveAll(users);
+        List<Long> ids = new ArrayList<>(users.stream().limit(1200).map(User::getId).toList());
+        ids.add(users.get(0).getId());
+        ids.add(-1L);
+
+        assertEquals(1200, userDAO.deleteAll(ids));
+        assertEquals(300L, userDAO.count());
+        assertEquals(0, userDAO.deleteAll(List.of()));
+    }
+
+    @Test
+    @DisplayName("Должен обновлять только переданные поля одним запросом без предварительной загрузки.")
+    void patch_Success() {
+        User user = users(1, "patch").get(0);
+        userDAO.save(user);
+        sessionFactory.getStatistics().clear();
+
+        //UPDATE идет через JDBC мимо статистики Hibernate, поэтому запросы считает SqlTracker
+        SqlStats sql = SqlTracker.measure(() -> assertTrue(userDAO.patch(user.getId(), UserPatch.builder().age(77).build())));
+
+        assertEquals(0, sessionFactory.getStatistics().getEntityLoadCount());
+        assertEquals(1, sql.getStatements());
+        User patched = userDAO.findById(user.getId()).orElseThrow();
+        assertEquals(77, patched.getAge());
+        assertEquals(user.getName(), patched.getName());
+        assertEquals(user.getEmail(), patched.getEmail());
+    }
+
+    @Test
+    @DisplayName("Не должен обновлять отсутствующего пользователя и не должен выполнять пустые изменения.")
+    void patch_NotFoundOrEmpty() {
+        assertFalse(userDAO.patch(-1L, UserPatch.builder().name("Nobody").build()));
+
+        sessionFactory.getStatistics().clear();
+        assertFalse(userDAO.patch(-1L, UserPatch.builder().build()));
+        assertEquals(0, sessionFactory.getStatistics().getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Методы чтения не должны выполнять flush.")
+    void reads_DoNotFlush() {
+        List<User> users = users(5, "readOnly");
+        userDAO.saveAll(users);
+        sessionFactory.getStatistics().clear();
+
+        assertEquals(5, userDAO.findAll().size());
+        assertTrue(userDAO.findById(users.get(0).getId()).isPresent());
+        assertTrue(userDAO.findByEmail(users.get(1).getEmail()).isPresent());
+        assertEquals(5, userDAO.findPage(null, 10).size());
+        assertEquals(5L, userDAO.count());
+
+        assertEquals(0, sessionFactory.getStatistics().getFlushCount());
+    }
+
+    @Test
+    @DisplayName("Должен возвращать проекции пользователей без загрузки сущностей.")
+    void summaries_Success() {
+        List<User> users = users(25, "summary");
+        userDAO.saveAll(users);
+        sessionFactory.getStatistics().clear();
+
+        List<UserSummary> summaries = userDAO.findAllSummaries();
+        UserSummary byEmail = userDAO.findSummaryByEmail(users.get(3).getEmail()).orElseThrow();
+        long streamed;
+        try (Stream<UserSummary> stream = userDAO.streamAllSummaries()) {
+            streamed = stream.count();
+        }
+
+        assertEquals(25, summaries.size());
+        assertEquals(new UserSummary(users.get(3).getId(), users.get(3).getName(), users.get(3).getEmail()), byEmail);
+        assertEquals(25, streamed);
+        assertTrue(userDAO.findSummaryByEmail("missing@mail.ru").isEmpty());
+        assertEquals(0, sessionFactory.getStatistics().getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("Должен искать по фильтру и листать результат по ключу.")
+    void search_FilterAndKeysetPages() {
+        List<User> users = users(100, "search");
+        users.get(7).setName("Alice");
+        users.get(8).setName("Al_ce");
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+        userDAO.saveAll(users);
+        LocalDateTime after = LocalDateTime.now().plusSeconds(1);
+
+        UserFilter byAge = UserFilter.builder().minAge(30).maxAge(39).createdFrom(before).createdTo(after).build();
+        List<User> found = new ArrayList<>();
+        PageRequest request = PageRequest.first(7);
+        Page<User> page;
+        do {
+            page = userDAO.search(byAge, request);
+            found.addAll(page.content());
+            request = page.hasNext() ? page.next() : null;
+        } while (request != null);
+
+        List<Long> expected = users.stream().filter(u -> u.getAge() >= 30 && u.getAge() <= 39).map(User::getId).sorted().toList();
+        assertEquals(expected, found.stream().map(User::getId).toList());
+
+        Page<User> byName = userDAO.search(UserFilter.builder().namePrefix("Al_").build(), PageRequest.first(10));
+        assertEquals(List.of("Al_ce"), byName.content().stream().map(User::getName).toList());
+        assertFalse(byName.hasNext());
+
+        assertTrue(userDAO.search(UserFilter.builder().createdTo(before).build(), PageRequest.first(10)).content().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять обновление устаревшей версии и возвращать новую версию после успешного.")
+    void update_VersionConflict() {
+        User user = users(1, "version").get(0);
+        userDAO.save(user);
+        User first = userDAO.findById(user.getId()).orElseThrow();
+        User second = userDAO.findById(user.getId()).orElseThrow();
+
+        first.setAge(41);
+        assertTrue(userDAO.update(first));
+        assertEquals(user.getVersion() + 1, first.getVersion());
+
+        second.setAge(42);
+        assertThrows(OptimisticLockException.class, () -> userDAO.update(second));
+        assertEquals(41, userDAO.findById(user.getId()).orElseThrow().getAge());
+
+        first.setAge(43);
+        userDAO.update(first);
+        assertTrue(userDAO.patch(user.getId(), UserPatch.builder().age(44).build()));
+        assertEquals(first.getVersion() + 1, userDAO.findById(user.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    @DisplayName("Должен возвращать false, если обновление нарушает ограничение таблицы.")
+    void update_ConstraintViolation() {
+        User user = users(1, "violation").get(0);
+        userDAO.save(user);
+        User found = userDAO.findById(user.getId()).orElseThrow();
+
+        found.setName(null);
+
+        assertFalse(userDAO.update(found));
+        assertEquals(user.getName(), userDAO.findById(user.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Должен сообщать, подтверждены ли сохранение и удаление.")
+    void saveAndDelete_ReportOutcome() {
+        User user = new User("Ivan", "outcome@mail.ru", 27);
+        assertTrue(userDAO.save(user));
+        assertFalse(userDAO.save(new User("Dup", "outcome@mail.ru", 30)));
+
+        assertTrue(userDAO.deleteById(user.getId()));
+        assertFalse(userDAO.deleteById(user.getId()));
+        assertEquals(0L, userDAO.count());
+    }
+
+    @Test
+    @DisplayName("Должен вставлять новых и обновлять существующих пользователей по email.")
+    void upsertAll_InsertsAndUpdates() {
+        User existing = new User("Old", "upsert0@mail.ru", 20);
+        userDAO.save(existing);
+        assertEquals("Old", userDAO.findById(existing.getId()).orElseThrow().getName());
+
+        List<User> batch = List.of(
+                new User("New0", "upsert0@mail.ru", 21),
+                new User("New1", "upsert1@mail.ru", 22),
+                new User("Dup", "upsert2@mail.ru", 23),
+                new User("New2", "upsert2@mail.ru", 24));
+        UpsertResult result = userDAO.upsertAll(batch);
+
+        assertEquals(new UpsertResult(2, 1), result);
+        assertEquals(3L, userDAO.count());
+        assertEquals(existing.getId(), batch.get(0).getId());
+        User updated = userDAO.findById(existing.getId()).orElseThrow();
+        assertEquals("New0", updated.getName());
+        assertEquals(existing.getVersion() + 1, updated.getVersion());
+        assertEquals(24, userDAO.findByEmail("upsert2@mail.ru").orElseThrow().getAge());
+
+        assertEquals(new UpsertResult(0, 1), userDAO.upsertByEmail(new User("Again", "upsert1@mail.ru", 30)));
+        assertEquals(UpsertResult.EMPTY, userDAO.upsertAll(List.of()));
+    }
+
+    @Test
+    @DisplayName("Должен пакетно перезаписывать пользователей и увеличивать версию.")
+    void updateAll_Success() {
+        List<User> users = users(25, "updateAll");
+        userDAO.saveAll(users);
+        long version = userDAO.findById(users.get(0).getId()).orElseThrow().getVersion();
+        users.forEach(user -> user.setAge(99));
+
+        BatchResult result = userDAO.updateAll(users);
+
+        assertFalse(result.hasFailures());
+        assertEquals(25, result.getSucceeded());
+        User updated = userDAO.findById(users.get(0).getId()).orElseThrow();
+        assertEquals(99, updated.getAge());
+        assertEquals(version + 1, updated.getVersion());
+        assertEquals(version + 1, users.get(0).getVersion());
+    }
+
+    @Test
+    @DisplayName("Должен сообщать о строках, измененных или удаленных после чтения, и не перезаписывать их.")
+    void updateAll_ReportsConflicts() {
+        List<User> users = users(3, "conflict");
+        userDAO.saveAll(users);
+        User stale = users.get(0).copy();
+        assertTrue(userDAO.patch(stale.getId(), UserPatch.builder().name("Other").build()));
+        assertTrue(userDAO.deleteById(users.get(1).getId()));
+        users.forEach(user -> user.setAge(99));
+        stale.setAge(99);
+
+        BatchResult result = userDAO.updateAll(List.of(stale, users.get(1), users.get(2)));
+
+        assertFalse(result.hasFailures());
+        assertEquals(1, result.getSucceeded());
+        assertEquals(List.of(stale, users.get(1)), result.getConflicts());
+        User untouched = userDAO.findById(stale.getId()).orElseThrow();
+        assertEquals("Other", untouched.getName());
+        assertNotEquals(99, untouched.getAge());
+        assertEquals(99, userDAO.findById(users.get(2).getId()).orElseThrow().getAge());
+    }
+
+    @Test
+    @DisplayName("Должен проверять существование пользователя без загрузки сущности.")
+    void exists_Success() {
+        User user = users(1, "exists").get(0);
+        userDAO.save(user);
+        sessionFactory.getStatistics().clear();
+
+        assertTrue(userDAO.existsByEmail(user.getEmail()));
+        assertTrue(userDAO.existsById(user.getId()));
+        assertFalse(userDAO.existsByEmail("missing@mail.ru"));
+        assertFalse(userDAO.existsById(-1L));
+        assertEquals(0, sessionFactory.getStatistics().getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("Чтения и запись по id не должны выполнять лишних SQL-запросов.")
+    void statementBudget_SingleRowOperations() {
+        User user = users(1, "budget").get(0);
+        //INSERT и, при исчерпании выделенного диапазона, следующее значение последовательности
+        SqlStatementGuard.assertMaxStatements(2, () -> userDAO.save(user));
+        SqlStatementGuard.assertMaxStatements(1, () -> userDAO.findById(user.getId()));
+        SqlStatementGuard.assertMaxStatements(1, () -> userDAO.existsByEmail(user.getEmail()));
+        user.setAge(99);
+        //merge читает строку и затем обновляет ее
+        SqlStatementGuard.assertMaxStatements(2, () -> userDAO.update(user));
+        SqlStatementGuard.assertMaxStatements(1, () -> userDAO.patch(user.getId(), UserPatch.builder().age(30).build()));
+        SqlStatementGuard.assertMaxStatements(1, () -> userDAO.deleteById(user.getId()));
+    }
+
+    @Test
+    @MaxStatements(6)
+    @DisplayName("Пакетное сохранение и страница поиска должны укладываться в фиксированное число SQL-запросов.")
+    void statementBudget_BatchAndPage() {
+        //пачки по BATCH_SIZE: 3 батча INSERT на 25 пользователей
+        userDAO.saveAll(users(25, "batch"));
+        Page<User> page = userDAO.search(UserFilter.builder().minAge(20).build(), PageRequest.first(10));
+        assertEquals(10, page.content().size());
+    }
+
+    @Test
+    @DisplayName("Должен загружать пользователей по списку id одним запросом в порядке входных id.")
+    void findAllById_Success() {
+        List<User> saved = users(25, "multi");
+        userDAO.saveAll(saved);
+        sessionFactory.getCache().evictAllRegions();
+        List<Long> ids = new ArrayList<>();
+        for (int i = saved.size() - 1; i >= 0; i--) {
+            ids.add(saved.get(i).getId());
+        }
+        ids.add(2, -1L);
+        ids.add(saved.get(0).getId());
+
+        FoundUsers result = SqlStatementGuard.assertMaxStatements(1, () -> userDAO.findAllById(ids));
+
+        assertEquals(25, result.users().size());
+        assertEquals(saved.get(24).getEmail(), result.users().get(0).getEmail());
+        assertEquals(saved.get(0).getEmail(), result.users().get(24).getEmail());
+        assertEquals(List.of(-1L), result.missingIds());
+        assertFalse(result.allFound());
+        assertEquals(FoundUsers.EMPTY, userDAO.findAllById(List.of()));
+    }
+}
@@ -9,7 +9,10 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import utils.HibernateSessionFactoryUtil;
+import utils.MaxStatements;
+import utils.PooledConnectionProvider;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
@@ -38,6 +41,7 @@ class UserDAOImplTest {
         settings.put(Environment.JAKARTA_JDBC_USER, postgres.getUsername());
         settings.put(Environment.JAKARTA_JDBC_PASSWORD, postgres.getPassword());
         settings.put(Environment.HBM2DDL_AUTO, "create-drop");
+        settings.put(Environment.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName());
 
         configuration.setProperties(settings);
         configuration.addAnnotatedClass(User.class);
@@ -65,6 +69,41 @@ class UserDAOImplTest {
     @AfterEach
     void tearDown() {}
 
+    @Test
+    //nextval + INSERT, SELECT по id, SELECT из merge + UPDATE
+    @MaxStatements(5)
+    @DisplayName("Сохранение, чтение и обновление пользователя не должны выполнять лишних SQL-запросов.")
+    void saveFindUpdate_StatementBudget() {
+        User ivan = new User("Ivan", "ivan@mail.ru", 27);
+        userDAO.save(ivan);
+        User found = userDAO.findById(ivan.getId()).orElseThrow();
+        found.setAge(28);
+        userDAO.update(found);
+    }
+
+    @Test
+    @DisplayName("Должен сдвигать users_seq за существующие id, вставленные до перехода на последовательность.")
+    void alignUserSequence_SkipsExistingIds() {
+        //строка с id, который последовательность выдала бы следующим блоком
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            long next = session.createNativeQuery("SELECT last_value FROM users_seq", Long.class).getSingleResult() + 1;
+            session.createNativeMutationQuery("INSERT INTO users (id, name, email, age, version) "
+                    + "VALUES (:id, 'Legacy', 'legacy@mail.ru', 40, 0)")
+                    .setParameter("id", next)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+
+        HibernateSessionFactoryUtil.alignUserSequence(sessionFactory);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2 * User.ID_ALLOCATION_SIZE; i++) {
+            users.add(new User("User" + i, "aligned" + i + "@mail.ru", 30));
+        }
+
+        assertFalse(userDAO.saveAll(users).hasFailures());
+    }
+
     @Test
     @DisplayName("Должен возвращать пользователя по id из БД.")
     void findById_Success() {
@@ -325,4 +364,30 @@ class UserDAOImplTest {
         userDAO.delete(oleg.getId());
         assertEquals(0L, userDAO.count());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Должен вставлять новых и обновлять существующих пользователей по email.")
+    void upsertAll_InsertsAndUpdates() {
+        User existing = new User("Old", "upsert0@mail.ru", 20);
+        userDAO.save(existing);
+        assertEquals("Old", userDAO.findById(existing.getId()).orElseThrow().getName());
+
+        List<User> batch = List.of(
+                new User("New0", "upsert0@mail.ru", 21),
+                new User("New1", "upsert1@mail.ru", 22),
+                new User("Dup", "upsert2@mail.ru", 23),
+                new User("New2", "upsert2@mail.ru", 24));
+        UpsertResult result = userDAO.upsertAll(batch);
+
+        assertEquals(new UpsertResult(2, 1), result);
+        assertEquals(3L, userDAO.count());
+        assertEquals(existing.getId(), batch.get(0).getId());
+        User updated = userDAO.findById(existing.getId()).orElseThrow();
+        assertEquals("New0", updated.getName());
+        assertEquals(existing.getVersion() + 1, updated.getVersion());
+        assertEquals(24, userDAO.findByEmail("upsert2@mail.ru").orElseThrow().getAge());
+
+        assertEquals(new UpsertResult(0, 1), userDAO.upsertByEmail(new User("Again", "upsert1@mail.ru", 30)));
+        assertEquals(UpsertResult.EMPTY, userDAO.upsertAll(List.of()));
+    }
+}
@@ -0,0 +1,178 @@
+package importer;
+
+import dao.UserDAOImpl;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import services.BloomFilterOptions;
+import services.UserService;
+import utils.EmbeddedDatabase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCsvImporterTest {
+
+    private static SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+    private UserCsvImporter importer;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("import");
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new UserDAOImpl(sessionFactory);
+        importer = new UserCsvImporter(sessionFactory, ImportOptions.builder()
+                .chunkSize(10)
+                .parserThreads(3)
+                .build());
+
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM User").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    private Path csv(List<String> lines) throws IOException {
+        return csv("users.csv", lines);
+    }
+
+    private Path csv(String name, List<String> lines) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> rows(int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add("User" + i + ",user" + i + "@mail.ru," + (20 + i % 40));
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("Должен импортировать все корректные строки файла.")
+    void importFile_Success() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("name,email,age"));
+        lines.addAll(rows(0, 95));
+
+        ImportReport report = importer.importFile(csv(lines));
+
+        assertTrue(report.isCompleted());
+        assertEquals(95, report.getRowsRead());
+        assertEquals(95, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(10, report.getChunksCommitted());
+        assertEquals(95L, userDAO.count());
+        assertEquals(20 + 7 % 40, userDAO.findByEmail("user7@mail.ru").orElseThrow().getAge());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять некорректные строки и дубликаты email.")
+    void importFile_RejectsInvalidAndDuplicateRows() throws IOException {
+        userDAO.save(new User("Existing", "user3@mail.ru", 30));
+        List<String> lines = new ArrayList<>(List.of("name,email,age"));
+        lines.addAll(rows(0, 20));
+        lines.add("\"Smith, John\",smith@mail.ru,41");
+        lines.add("NoAge,noage@mail.ru,");
+        lines.add("BadEmail,bad-email,30");
+        lines.add("Dup,user15@mail.ru,30");
+
+        ImportReport report = importer.importFile(csv(lines));
+
+        assertTrue(report.isCompleted());
+        assertEquals(24, report.getRowsRead());
+        assertEquals(20, report.getImported());
+        assertEquals(4, report.getRejected());
+        assertTrue(report.getRejectedRows().stream().anyMatch(r -> r.getLineNumber() == 5));
+        assertTrue(report.getRejectedRows().stream().anyMatch(r -> r.getLineNumber() == 25));
+        assertEquals("Smith, John", userDAO.findByEmail("smith@mail.ru").orElseThrow().getName());
+        assertEquals("Existing", userDAO.findByEmail("user3@mail.ru").orElseThrow().getName());
+        assertEquals(21L, userDAO.count());
+    }
+
+    @Test
+    @DisplayName("Должен продолжать импорт после последней закоммиченной пачки.")
+    void importFile_ResumesFromCheckpoint() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("name,email,age"));
+        lines.addAll(rows(0, 30));
+        Path file = csv(lines);
+        Path checkpoint = tempDir.resolve("users.checkpoint");
+        //первые 10 строк данных (строки файла 2-11) уже импортированы прошлым запуском
+        importer.importFile(csv("first-run.csv", lines.subList(0, 11)));
+        new ImportCheckpoint(11, 1, 10, 10, 0).save(checkpoint);
+
+        ImportReport report = importer.importFile(file, checkpoint);
+
+        assertTrue(report.isCompleted());
+        assertTrue(report.isResumed());
+        assertEquals(30, report.getRowsRead());
+        assertEquals(10, report.getResumedRows());
+        assertEquals(30, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(30L, userDAO.count());
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    @DisplayName("Скорость после возобновления должна считаться только по строкам текущего запуска.")
+    void report_RowsPerSecondExcludesResumedRows() {
+        ImportReport report = new ImportReport(10);
+        report.resumeFrom(new ImportCheckpoint(11, 1, 10, 10, 0));
+        report.chunkCommitted(20, 20, List.of(), 31);
+        report.finish(1000, true, null);
+
+        assertEquals(30, report.getRowsRead());
+        assertEquals(20.0, report.getRowsPerSecond());
+    }
+
+    @Test
+    @DisplayName("Должен сообщать сервису о вставках, чтобы его счетчик и фильтр email не устарели.")
+    void importFile_PublishesInsertsToService() throws IOException {
+        userDAO.save(new User("Existing", "user3@mail.ru", 40));
+        UserService userService = new UserService(userDAO);
+        assertEquals(1L, userService.enableCountCache(Duration.ofHours(1)));
+        userService.enableEmailFilter(BloomFilterOptions.builder().expectedInsertions(1000).build());
+        List<String> lines = new ArrayList<>(List.of("name,email,age"));
+        lines.addAll(rows(0, 25));
+
+        ImportReport report = new UserCsvImporter(sessionFactory, ImportOptions.builder().chunkSize(10).build(), userService)
+                .importFile(csv(lines));
+
+        assertEquals(24, report.getImported());
+        assertEquals(25L, userService.getUsersCount());
+        for (int i = 0; i < 25; i++) {
+            assertTrue(userService.existsByEmail("user" + i + "@mail.ru"));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен завершаться с ошибкой, если файл не найден.")
+    void importFile_MissingFile() {
+        ImportReport report = importer.importFile(tempDir.resolve("missing.csv"));
+
+        assertFalse(report.isCompleted());
+        assertNotNull(report.getError());
+    }
+}
@@ -0,0 +1,81 @@
+package loadtest;
+
+import dao.BatchResult;
+import dao.UserDAO;
+import models.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Набор пользователей, к которым обращается нагрузка: засеянные перед запуском строки
+//и id, созданные операцией saveUser (их удаляет cleanup вместе с засеянными).
+final class Dataset {
+    private final String prefix;
+    private final long[] ids;
+    private final String[] emails;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentLinkedQueue<Long> savedIds = new ConcurrentLinkedQueue<>();
+
+    private Dataset(String prefix, long[] ids, String[] emails) {
+        this.prefix = prefix;
+        this.ids = ids;
+        this.emails = emails;
+    }
+
+    //email уникальны для запуска, поэтому повторные прогоны на одной PostgreSQL не конфликтуют
+    static Dataset seed(UserDAO userDAO, int rows, int batchSize) {
+        String prefix = "load" + System.currentTimeMillis() + "-";
+        long[] ids = new long[rows];
+        String[] emails = new String[rows];
+        for (int from = 0; from < rows; from += batchSize) {
+            List<User> users = new ArrayList<>(batchSize);
+            for (int i = from; i < Math.min(from + batchSize, rows); i++) {
+                emails[i] = prefix + "seed" + i + "@mail.ru";
+                users.add(new User("User" + i, emails[i], 18 + i % 60));
+            }
+            BatchResult result = userDAO.saveAll(users);
+            if (result.hasFailures()) {
+                throw new IllegalStateException("Не удалось заполнить таблицу: " + result);
+            }
+            for (int i = 0; i < users.size(); i++) {
+                ids[from + i] = users.get(i).getId();
+            }
+        }
+        return new Dataset(prefix, ids, emails);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long randomId(ThreadLocalRandom random) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    String randomEmail(ThreadLocalRandom random) {
+        return emails[random.nextInt(emails.length)];
+    }
+
+    String nextEmail() {
+        return prefix + "new" + sequence.incrementAndGet() + "@mail.ru";
+    }
+
+    void saved(Long id) {
+        if (id != null) {
+            savedIds.add(id);
+        }
+    }
+
+    Collection<Long> allIds() {
+        List<Long> all = new ArrayList<>(ids.length + savedIds.size());
+        for (long id : ids) {
+            all.add(id);
+        }
+        all.addAll(savedIds);
+        return all;
+    }
+}
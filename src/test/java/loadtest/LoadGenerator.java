@@ -0,0 +1,225 @@
+package loadtest;
+
+import dao.UserDAO;
+import dao.UserDAOImpl;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import services.InMemoryUserCache;
+import services.UserCache;
+import services.UserService;
+import utils.EmbeddedDatabase;
+import utils.HibernateSessionFactoryUtil;
+import utils.PooledConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Нагрузочный прогон UserService смесью операций: засев данных, прогрев, измерение, отчет.
+//С целевой частотой (open loop) каждый запрос имеет запланированный момент отправки, и задержка считается
+//от него - запросы, задержанные медленным предыдущим, попадают в перцентили (поправка на coordinated omission).
+//В замкнутом цикле расписания нет, поэтому поправка делается HdrHistogram по среднему интервалу из прогрева.
+//Запуск: mvn -Ploadtest test -DskipTests -Dload.args="database=postgres threads=16 rate=2000 duration=5m"
+public final class LoadGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final LoadOptions options;
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private final Map<LoadOperation, OperationRecorder> recorders = new EnumMap<>(LoadOperation.class);
+    private volatile boolean running;
+    //ожидаемый интервал между запросами одного потока для поправки в замкнутом цикле, мкс; 0 - без поправки
+    private volatile long expectedIntervalMicros;
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.operations = options.getMix().keySet().toArray(new LoadOperation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.getMix().get(operations[i]);
+            cumulativeWeights[i] = total;
+            recorders.put(operations[i], new OperationRecorder());
+        }
+    }
+
+    public static void main(String[] args) {
+        LoadOptions options = LoadOptions.parse(args);
+        LOGGER.warn("Нагрузочный прогон: {}", options);
+        new LoadGenerator(options).run().print(System.out);
+    }
+
+    LoadReport run() {
+        SessionFactory sessionFactory = sessionFactory();
+        try {
+            UserDAO userDAO = new UserDAOImpl(sessionFactory);
+            Dataset dataset = Dataset.seed(userDAO, options.getSeedRows(), SEED_BATCH_SIZE);
+            LOGGER.warn("Засеяно {} пользователей.", dataset.size());
+            UserCache cache = options.isServiceCache() ? new InMemoryUserCache() : UserCache.disabled();
+            try (UserService userService = new UserService(userDAO, cache)) {
+                LoadReport report = drive(userService, dataset);
+                if (options.isCleanup()) {
+                    userService.deleteUsers(dataset.allIds());
+                }
+                return report;
+            }
+        } finally {
+            if (options.getDatabase() == LoadOptions.Database.POSTGRES) {
+                HibernateSessionFactoryUtil.shutdownSession();
+            } else {
+                sessionFactory.close();
+            }
+        }
+    }
+
+    private SessionFactory sessionFactory() {
+        if (options.getDatabase() == LoadOptions.Database.POSTGRES) {
+            return HibernateSessionFactoryUtil.getSessionFactory();
+        }
+        //те же пул, батчинг и кэши, что и в hibernate.cfg.xml, пул - по числу потоков нагрузки
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(Environment.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName());
+        settings.put(PooledConnectionProvider.MIN_SIZE, String.valueOf(options.getThreads()));
+        settings.put(PooledConnectionProvider.MAX_SIZE, String.valueOf(options.getThreads()));
+        settings.put(Environment.STATEMENT_BATCH_SIZE, "50");
+        settings.put(Environment.ORDER_INSERTS, "true");
+        settings.put(Environment.USE_SECOND_LEVEL_CACHE, "true");
+        settings.put(Environment.USE_QUERY_CACHE, "true");
+        return EmbeddedDatabase.sessionFactory("load_" + System.nanoTime(), settings);
+    }
+
+    private LoadReport drive(UserService userService, Dataset dataset) {
+        running = true;
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>(options.getThreads());
+        for (int i = 0; i < options.getThreads(); i++) {
+            int worker = i;
+            workers.add(Thread.ofPlatform().name("load-" + i).start(() -> work(userService, dataset, worker, start)));
+        }
+
+        sleep(options.getWarmup());
+        long warmupOperations = 0;
+        for (OperationRecorder recorder : recorders.values()) {
+            warmupOperations += recorder.reset();
+        }
+        if (options.getTargetRate() == 0 && warmupOperations > 0) {
+            expectedIntervalMicros = TimeUnit.NANOSECONDS.toMicros(
+                    options.getWarmup().toNanos() * options.getThreads() / warmupOperations);
+        }
+        long measureStart = System.nanoTime();
+        sleep(options.getDuration());
+        running = false;
+        Duration measured = Duration.ofNanos(System.nanoTime() - measureStart);
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<OperationResult> results = new ArrayList<>();
+        for (LoadOperation operation : operations) {
+            results.add(recorders.get(operation).result(operation, measured));
+        }
+        return new LoadReport(options, measured, results);
+    }
+
+    private void work(UserService userService, Dataset dataset, int worker, long start) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        //период одного потока; потоки сдвинуты друг относительно друга, чтобы не слать запросы пачкой
+        long period = options.getTargetRate() > 0 ? TimeUnit.SECONDS.toNanos(options.getThreads()) / options.getTargetRate() : 0;
+        long next = start + period * worker / options.getThreads();
+        while (running) {
+            long intended;
+            if (period > 0) {
+                intended = next;
+                next += period;
+                long delay;
+                while ((delay = intended - System.nanoTime()) > 0 && running) {
+                    LockSupport.parkNanos(delay);
+                }
+                if (!running) {
+                    break;
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+            LoadOperation operation = pick(random);
+            long sent = System.nanoTime();
+            boolean failed;
+            try {
+                failed = !operation.execute(userService, dataset, random);
+            } catch (Exception e) {
+                failed = true;
+            }
+            long done = System.nanoTime();
+            recorders.get(operation).record(done - intended, done - sent, failed, expectedIntervalMicros);
+        }
+    }
+
+    private LoadOperation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Recorder позволяет писать из многих потоков и забирать снимок без остановки нагрузки
+    private static final class OperationRecorder {
+        private final Recorder responseTime = new Recorder(3);
+        private final Recorder serviceTime = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long responseNanos, long serviceNanos, boolean failed, long expectedIntervalMicros) {
+            long responseMicros = TimeUnit.NANOSECONDS.toMicros(responseNanos);
+            if (expectedIntervalMicros > 0) {
+                responseTime.recordValueWithExpectedInterval(responseMicros, expectedIntervalMicros);
+            } else {
+                responseTime.recordValue(responseMicros);
+            }
+            serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        //сбрасывает накопленное за прогрев; возвращает число операций за прогрев
+        long reset() {
+            responseTime.reset();
+            errors.reset();
+            return serviceTime.getIntervalHistogram().getTotalCount();
+        }
+
+        OperationResult result(LoadOperation operation, Duration measured) {
+            Histogram response = responseTime.getIntervalHistogram();
+            Histogram service = serviceTime.getIntervalHistogram();
+            long count = service.getTotalCount();
+            return new OperationResult(operation, count, errors.sum(), count / (measured.toNanos() / 1e9),
+                    response, service);
+        }
+    }
+}
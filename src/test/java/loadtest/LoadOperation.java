@@ -0,0 +1,65 @@
+package loadtest;
+
+import models.User;
+import services.UserService;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//операции нагрузки; имя в параметре mix совпадает с методом UserService
+enum LoadOperation {
+    GET_USER_BY_ID("getUserById") {
+        @Override
+        boolean execute(UserService userService, Dataset dataset, ThreadLocalRandom random) {
+            //засеянные строки не удаляются, пустой ответ - ошибка, проглоченная сервисом
+            return userService.getUserById(dataset.randomId(random)).isPresent();
+        }
+    },
+    GET_USER_BY_EMAIL("getUserByEmail") {
+        @Override
+        boolean execute(UserService userService, Dataset dataset, ThreadLocalRandom random) {
+            return userService.getUserByEmail(dataset.randomEmail(random)).isPresent();
+        }
+    },
+    SAVE_USER("saveUser") {
+        @Override
+        boolean execute(UserService userService, Dataset dataset, ThreadLocalRandom random) {
+            User user = new User("Load", dataset.nextEmail(), 18 + random.nextInt(60));
+            //id назначается до коммита, поэтому в набор для очистки попадают только сохраненные
+            if (!userService.saveUser(user)) {
+                return false;
+            }
+            dataset.saved(user.getId());
+            return true;
+        }
+    },
+    //чтение, изменение и запись с повтором при конфликте версий
+    UPDATE_USER("updateUser") {
+        @Override
+        boolean execute(UserService userService, Dataset dataset, ThreadLocalRandom random) {
+            int age = 18 + random.nextInt(60);
+            return userService.updateUser(dataset.randomId(random), user -> user.setAge(age)).isPresent();
+        }
+    };
+
+    private final String methodName;
+
+    LoadOperation(String methodName) {
+        this.methodName = methodName;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    //false - операция не удалась: сервис проглатывает ошибки БД и сообщает о них только результатом
+    abstract boolean execute(UserService userService, Dataset dataset, ThreadLocalRandom random);
+
+    static LoadOperation byMethodName(String name) {
+        for (LoadOperation operation : values()) {
+            if (operation.methodName.equalsIgnoreCase(name) || operation.name().equalsIgnoreCase(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная операция: " + name);
+    }
+}
@@ -0,0 +1,117 @@
+package loadtest;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class LoadOptions {
+    public enum Database {
+        //H2 в памяти, как в бенчмарках
+        EMBEDDED,
+        //hibernate.cfg.xml: локальная PostgreSQL
+        POSTGRES
+    }
+
+    @Builder.Default
+    private final Database database = Database.EMBEDDED;
+    //сколько пользователей засеять перед запуском
+    @Builder.Default
+    private final int seedRows = 10_000;
+    @Builder.Default
+    private final int threads = 8;
+    //операций в секунду на все потоки; 0 - замкнутый цикл, каждый поток шлет следующий запрос сразу после ответа
+    @Builder.Default
+    private final int targetRate = 0;
+    @Builder.Default
+    private final Duration warmup = Duration.ofSeconds(10);
+    @Builder.Default
+    private final Duration duration = Duration.ofSeconds(60);
+    //веса операций, доля операции = вес / сумма весов
+    @Builder.Default
+    private final Map<LoadOperation, Integer> mix = defaultMix();
+    //InMemoryUserCache перед DAO, как в new UserService()
+    @Builder.Default
+    private final boolean serviceCache = true;
+    //удалить засеянных и созданных пользователей после прогона
+    @Builder.Default
+    private final boolean cleanup = true;
+
+    public static LoadOptions defaults() {
+        return LoadOptions.builder().build();
+    }
+
+    private static Map<LoadOperation, Integer> defaultMix() {
+        Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+        mix.put(LoadOperation.GET_USER_BY_ID, 80);
+        mix.put(LoadOperation.GET_USER_BY_EMAIL, 10);
+        mix.put(LoadOperation.SAVE_USER, 5);
+        mix.put(LoadOperation.UPDATE_USER, 5);
+        return mix;
+    }
+
+    //аргументы вида key=value, например: database=postgres threads=16 rate=2000 duration=5m
+    //mix=getUserById:80,getUserByEmail:10,saveUser:5,updateUser:5
+    public static LoadOptions parse(String... args) {
+        LoadOptionsBuilder builder = LoadOptions.builder();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Ожидается key=value: " + arg);
+            }
+            String key = arg.substring(0, eq).trim();
+            String value = arg.substring(eq + 1).trim();
+            switch (key) {
+                case "database" -> builder.database(Database.valueOf(value.toUpperCase()));
+                case "seed" -> builder.seedRows(Integer.parseInt(value));
+                case "threads" -> builder.threads(Integer.parseInt(value));
+                case "rate" -> builder.targetRate(Integer.parseInt(value));
+                case "warmup" -> builder.warmup(parseDuration(value));
+                case "duration" -> builder.duration(parseDuration(value));
+                case "mix" -> builder.mix(parseMix(value));
+                case "cache" -> builder.serviceCache(Boolean.parseBoolean(value));
+                case "cleanup" -> builder.cleanup(Boolean.parseBoolean(value));
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + key);
+            }
+        }
+        return builder.build();
+    }
+
+    //30s, 5m, 1h или ISO-8601 (PT30S)
+    static Duration parseDuration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Неизвестная единица времени: " + value);
+        };
+    }
+
+    static Map<LoadOperation, Integer> parseMix(String value) {
+        Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидается операция:вес: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                mix.put(LoadOperation.byMethodName(pair[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Пустой набор операций: " + value);
+        }
+        return mix;
+    }
+}
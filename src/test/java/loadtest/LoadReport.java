@@ -0,0 +1,39 @@
+package loadtest;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+
+record LoadReport(LoadOptions options, Duration measured, List<OperationResult> operations) {
+
+    long totalCount() {
+        return operations.stream().mapToLong(OperationResult::count).sum();
+    }
+
+    double totalThroughput() {
+        return totalCount() / (measured.toNanos() / 1e9);
+    }
+
+    void print(PrintStream out) {
+        out.printf("%nБД: %s, потоков: %d, %s, измерение: %.1f с%n", options.getDatabase(), options.getThreads(),
+                options.getTargetRate() > 0 ? "целевая частота " + options.getTargetRate() + " оп/с" : "замкнутый цикл",
+                measured.toNanos() / 1e9);
+        out.printf("%-16s %10s %10s %8s %10s %10s %10s %10s %10s %12s%n", "операция", "кол-во", "оп/с", "ошибки",
+                "p50, мс", "p90, мс", "p99, мс", "p99.9, мс", "max, мс", "p99 обсл., мс");
+        for (OperationResult result : operations) {
+            out.printf("%-16s %10d %10.1f %8d %10.3f %10.3f %10.3f %10.3f %10.3f %12.3f%n",
+                    result.operation().getMethodName(), result.count(), result.throughput(), result.errors(),
+                    millis(result.responseTime().getValueAtPercentile(50)),
+                    millis(result.responseTime().getValueAtPercentile(90)),
+                    millis(result.responseTime().getValueAtPercentile(99)),
+                    millis(result.responseTime().getValueAtPercentile(99.9)),
+                    millis(result.responseTime().getMaxValue()),
+                    millis(result.serviceTime().getValueAtPercentile(99)));
+        }
+        out.printf("%-16s %10d %10.1f%n", "всего", totalCount(), totalThroughput());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
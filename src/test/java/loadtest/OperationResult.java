@@ -0,0 +1,10 @@
+package loadtest;
+
+import org.HdrHistogram.Histogram;
+
+//итог по одной операции за время измерения; гистограммы в микросекундах.
+//responseTime - от запланированного момента запроса до ответа (с поправкой на coordinated omission),
+//serviceTime - от фактической отправки до ответа
+record OperationResult(LoadOperation operation, long count, long errors, double throughput,
+                       Histogram responseTime, Histogram serviceTime) {
+}
@@ -0,0 +1,223 @@
+package replica;
+
+import dao.UserDAOImpl;
+import models.User;
+import models.UserPatch;
+import models.UserSummary;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.*;
+import utils.EmbeddedDatabase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserReplicaTest {
+    private static SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+    private UserReplica replica;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("replica");
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new UserDAOImpl(sessionFactory);
+
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM User").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    //без фонового опроса: обновления только через refresh() и rescan()
+    private UserReplica replica() {
+        replica = new UserReplica(userDAO, ReplicaOptions.builder()
+                .pollInterval(Duration.ZERO)
+                .rescanInterval(Duration.ofDays(1))
+                .initialCapacity(16)
+                .build());
+        return replica;
+    }
+
+    private List<User> saveUsers(int count, String prefix) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("User" + i, prefix + i + "@mail.ru", 20 + i % 50));
+        }
+        assertFalse(userDAO.saveAll(users).hasFailures());
+        return users;
+    }
+
+    private void assertFindable(User user) {
+        assertTrue(replica.containsId(user.getId()), user.getEmail());
+        assertEquals(user.getId(), replica.idByEmail(user.getEmail()));
+        assertEquals(user.getAge(), replica.ageById(user.getId()));
+        assertEquals(Optional.of(new UserSummary(user.getId(), user.getName(), user.getEmail())),
+                replica.findSummaryById(user.getId()));
+    }
+
+    @Test
+    @DisplayName("Должен загружать всю таблицу и искать по id и email.")
+    void load_LookupsByIdAndEmail() {
+        List<User> users = saveUsers(100, "load");
+        User cyrillic = new User("Иван Петров", "иван@почта.рф", 33);
+        userDAO.save(cyrillic);
+
+        replica();
+
+        assertEquals(101, replica.size());
+        users.forEach(this::assertFindable);
+        assertFindable(cyrillic);
+        assertEquals(Optional.of(new UserSummary(cyrillic.getId(), "Иван Петров", "иван@почта.рф")),
+                replica.findSummaryByEmail("иван@почта.рф"));
+        assertFalse(replica.containsId(-1L));
+        assertFalse(replica.containsEmail("missing@mail.ru"));
+        assertEquals(-1, replica.idByEmail("missing@mail.ru"));
+        assertEquals(-1, replica.ageById(-1L));
+        assertTrue(replica.findSummaryById(-1L).isEmpty());
+        assertTrue(replica.findSummaryByEmail(null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Должен забирать новые и измененные строки при опросе.")
+    void refresh_AppliesChangedRows() {
+        List<User> users = saveUsers(10, "refresh");
+        replica();
+        User changed = users.get(3);
+
+        assertTrue(userDAO.patch(changed.getId(), UserPatch.builder().name("Renamed").email("renamed@mail.ru").age(99).build()));
+        User added = new User("Added", "added@mail.ru", 40);
+        userDAO.save(added);
+
+        assertTrue(replica.refresh() >= 2);
+
+        assertEquals(11, replica.size());
+        assertFindable(added);
+        assertFalse(replica.containsEmail("refresh3@mail.ru"));
+        assertEquals(changed.getId(), replica.idByEmail("renamed@mail.ru"));
+        assertEquals(99, replica.ageById(changed.getId()));
+        assertEquals("Renamed", replica.findSummaryById(changed.getId()).orElseThrow().name());
+    }
+
+    @Test
+    @DisplayName("Должен убирать удаленные строки при сверке, не теряя остальные.")
+    void rescan_RemovesDeletedRows() {
+        List<User> users = saveUsers(50, "rescan");
+        replica();
+        List<Long> deleted = new ArrayList<>();
+        for (int i = 0; i < users.size(); i += 3) {
+            deleted.add(users.get(i).getId());
+        }
+
+        assertEquals(deleted.size(), userDAO.deleteAll(deleted));
+        assertEquals(deleted.size(), replica.rescan());
+
+        assertEquals(50 - deleted.size(), replica.size());
+        for (User user : users) {
+            if (deleted.contains(user.getId())) {
+                assertFalse(replica.containsId(user.getId()));
+                assertFalse(replica.containsEmail(user.getEmail()));
+            } else {
+                assertFindable(user);
+            }
+        }
+        assertEquals(deleted.size(), replica.getStats().getDeletedRows());
+    }
+
+    @Test
+    @DisplayName("Должен догружать при сверке строки, которые опрос пропустил.")
+    void rescan_LoadsRowsMissedByPolling() {
+        saveUsers(5, "missed");
+        replica();
+        User late = new User("Late", "late@mail.ru", 50);
+        userDAO.save(late);
+        //как строка из долгой транзакции: updated_at раньше прошлого опроса
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("UPDATE User u SET u.updatedAt = :old WHERE u.id = :id")
+                    .setParameter("old", LocalDateTime.now().minusDays(1))
+                    .setParameter("id", late.getId())
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+
+        replica.refresh();
+        assertFalse(replica.containsId(late.getId()));
+
+        assertEquals(1, replica.rescan());
+        assertFindable(late);
+    }
+
+    @Test
+    @DisplayName("Должен перечитывать при сверке строки, изменение которых опрос пропустил.")
+    void rescan_ReloadsUpdatesMissedByPolling() {
+        List<User> users = saveUsers(5, "stale");
+        replica();
+        User changed = users.get(2);
+        assertTrue(userDAO.patch(changed.getId(), UserPatch.builder().name("Changed").age(77).build()));
+        //как изменение из долгой транзакции: updated_at раньше прошлого опроса, версия уже новая
+        try (var session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createMutationQuery("UPDATE User u SET u.updatedAt = :old WHERE u.id = :id")
+                    .setParameter("old", LocalDateTime.now().minusDays(1))
+                    .setParameter("id", changed.getId())
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+
+        replica.refresh();
+        assertEquals(changed.getAge(), replica.ageById(changed.getId()));
+
+        assertEquals(1, replica.rescan());
+        assertEquals(77, replica.ageById(changed.getId()));
+        assertEquals("Changed", replica.findSummaryById(changed.getId()).orElseThrow().name());
+        //повторная сверка ничего не перечитывает
+        assertEquals(0, replica.rescan());
+    }
+
+    @Test
+    @DisplayName("Должен освобождать место замененных строк и сообщать размер на строку.")
+    void stats_ReportFootprintAndCompactStrings() {
+        List<User> users = saveUsers(20, "stats");
+        replica();
+        ReplicaStats loaded = replica.getStats();
+
+        assertEquals(20, loaded.getRows());
+        assertEquals(loaded.getColumnBytes() + loaded.getStringBytes() + loaded.getIndexBytes(), loaded.getTotalBytes());
+        assertEquals((double) loaded.getTotalBytes() / 20, loaded.getBytesPerRow(), 1e-9);
+        assertEquals(0, loaded.getGarbageStringBytes());
+
+        for (int round = 0; round < 5; round++) {
+            for (User user : users) {
+                user.setName("Name" + round + "-" + user.getId());
+            }
+            assertFalse(userDAO.updateAll(users).hasFailures());
+            replica.refresh();
+        }
+
+        ReplicaStats updated = replica.getStats();
+        assertTrue(updated.getGarbageStringBytes() * 2 <= updated.getStringBytes(), updated.toString());
+        assertEquals(5, updated.getRefreshes());
+        users.forEach(this::assertFindable);
+    }
+}
@@ -0,0 +1,106 @@
+package services;
+
+import dao.UserDAO;
+import models.User;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncUserServiceTest {
+
+    @Mock
+    private UserDAO userDAO;
+
+    private AsyncUserService asyncUserService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        asyncUserService = new AsyncUserService(new UserService(userDAO), 4);
+        user = new User("Ivan", "ivan@mail.ru", 27);
+        user.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncUserService.close();
+    }
+
+    @Test
+    @DisplayName("Должен асинхронно возвращать пользователя по id.")
+    void getUserById_Success() throws Exception {
+        when(userDAO.findById(1L)).thenReturn(Optional.of(user));
+
+        Optional<User> result = asyncUserService.getUserById(1L).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isPresent());
+        assertEquals("Ivan", result.get().getName());
+    }
+
+    @Test
+    @DisplayName("Должен асинхронно выполнять операции записи и подсчета.")
+    void writeOperations_Success() throws Exception {
+        when(userDAO.count()).thenReturn(3L);
+
+        CompletableFuture.allOf(
+                asyncUserService.saveUser(user),
+                asyncUserService.updateUser(user),
+                asyncUserService.deleteUser(1L)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3L, asyncUserService.getUsersCount().get(5, TimeUnit.SECONDS));
+        verify(userDAO).save(user);
+        verify(userDAO).update(user);
+        verify(userDAO).deleteById(1L);
+    }
+
+    @Test
+    @DisplayName("Не должен выполнять одновременно больше операций, чем разрешено.")
+    void fanOut_RespectsConcurrencyLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(userDAO.findById(anyLong())).thenAnswer(invocation -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            Thread.sleep(1);
+            running.decrementAndGet();
+            return Optional.empty();
+        });
+
+        List<CompletableFuture<Optional<User>>> futures = new ArrayList<>();
+        for (long id = 0; id < 2000; id++) {
+            futures.add(asyncUserService.getUserById(id));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(4, asyncUserService.getAvailablePermits());
+        verify(userDAO, times(2000)).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Не должен создаваться с нулевым лимитом.")
+    void constructor_RejectsZeroLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncUserService(new UserService(userDAO), 0));
+    }
+
+    @Test
+    @DisplayName("Без явного лимита для переданного сервиса должен брать фиксированный лимит, не создавая глобальную фабрику.")
+    void constructor_DefaultLimitWithoutGlobalFactory() {
+        try (AsyncUserService service = new AsyncUserService(new UserService(userDAO))) {
+            assertEquals(10, service.getMaxConcurrency());
+        }
+    }
+}
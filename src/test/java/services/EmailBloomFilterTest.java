@@ -0,0 +1,44 @@
+package services;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailBloomFilterTest {
+
+    @Test
+    @DisplayName("Не должен давать ложных промахов, а доля ложных срабатываний - быть близкой к заданной.")
+    void mightContain_NoFalseNegatives() {
+        EmailBloomFilter filter = new EmailBloomFilter(BloomFilterOptions.builder()
+                .expectedInsertions(10_000).falsePositiveRate(0.01).build());
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@mail.ru");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@mail.ru"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@mail.ru")) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives / 100_000.0 < 0.02, "ложных срабатываний: " + falsePositives);
+        assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.005);
+        assertEquals(7, filter.getHashFunctions());
+    }
+
+    @Test
+    @DisplayName("Потолок памяти должен ограничивать размер фильтра.")
+    void maxMemoryBytes_CapsBitArray() {
+        EmailBloomFilter filter = new EmailBloomFilter(BloomFilterOptions.builder()
+                .expectedInsertions(1_000_000).falsePositiveRate(0.001).maxMemoryBytes(1024).build());
+
+        assertEquals(1024, filter.getMemoryBytes());
+        assertEquals(1024 * 8, filter.getBitSize());
+        assertThrows(IllegalArgumentException.class,
+                () -> new EmailBloomFilter(BloomFilterOptions.builder().falsePositiveRate(1.5).build()));
+    }
+}
@@ -0,0 +1,119 @@
+package services;
+
+import models.User;
+import org.junit.jupiter.api.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserCacheTest {
+
+    private MutableClock clock;
+    private InMemoryUserCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        cache = new InMemoryUserCache(2, Duration.ofSeconds(10), clock);
+    }
+
+    private static User user(long id, String email) {
+        User user = new User("User" + id, email, 30);
+        user.setId(id);
+        return user;
+    }
+
+    @Test
+    @DisplayName("Должен находить пользователя по id и по email.")
+    void put_ThenGetByIdAndEmail() {
+        cache.putIfUnchanged(user(1, "a@mail.ru"), cache.stamp());
+
+        assertEquals("a@mail.ru", cache.getById(1).orElseThrow().getEmail());
+        assertEquals(1L, cache.getByEmail("a@mail.ru").orElseThrow().getId());
+        assertEquals(2, cache.getStats().getHits());
+    }
+
+    @Test
+    @DisplayName("Изменение возвращенного объекта не должно менять кэш.")
+    void get_ReturnsCopy() {
+        cache.putIfUnchanged(user(1, "a@mail.ru"), cache.stamp());
+
+        cache.getById(1).orElseThrow().setName("Changed");
+
+        assertEquals("User1", cache.getById(1).orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Должен вытеснять давно не использованную запись при переполнении.")
+    void put_EvictsLeastRecentlyUsed() {
+        cache.putIfUnchanged(user(1, "a@mail.ru"), cache.stamp());
+        cache.putIfUnchanged(user(2, "b@mail.ru"), cache.stamp());
+        cache.getById(1);
+        cache.putIfUnchanged(user(3, "c@mail.ru"), cache.stamp());
+
+        assertTrue(cache.getById(1).isPresent());
+        assertFalse(cache.getById(2).isPresent());
+        assertFalse(cache.getByEmail("b@mail.ru").isPresent());
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    @DisplayName("Должен не отдавать запись после истечения TTL.")
+    void get_ExpiresAfterTtl() {
+        cache.putIfUnchanged(user(1, "a@mail.ru"), cache.stamp());
+        clock.advance(Duration.ofSeconds(11));
+
+        assertFalse(cache.getById(1).isPresent());
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    @Test
+    @DisplayName("Не должен сохранять значение, прочитанное до инвалидации.")
+    void putIfUnchanged_RejectsAfterInvalidation() {
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+
+        cache.putIfUnchanged(user(1, "a@mail.ru"), stamp);
+
+        assertFalse(cache.getById(1).isPresent());
+        assertEquals(1, cache.getStats().getRejectedPuts());
+    }
+
+    @Test
+    @DisplayName("Инвалидация по id должна убирать и индекс по email.")
+    void invalidate_RemovesEmailIndex() {
+        cache.putIfUnchanged(user(1, "a@mail.ru"), cache.stamp());
+
+        cache.invalidate(1);
+
+        assertFalse(cache.getByEmail("a@mail.ru").isPresent());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package services;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnownEmailFilterTest {
+    private static final BloomFilterOptions OPTIONS = BloomFilterOptions.builder().expectedInsertions(100_000).build();
+
+    //таблица, которую видит построение: email, добавленные через add, в ней не появляются,
+    //как строки, закоммиченные уже после начала чтения
+    private static Stream<String> table(int size) {
+        return IntStream.range(0, size).mapToObj(i -> "user" + i + "@mail.ru");
+    }
+
+    @Test
+    @DisplayName("Email, добавленные во время первого построения, должны оставаться в фильтре.")
+    void load_KeepsEmailsAddedDuringScan() throws Exception {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(1);
+        KnownEmailFilter filter = new KnownEmailFilter(OPTIONS, () -> table(1000).peek(email -> {
+            if (email.equals("user500@mail.ru")) {
+                scanning.countDown();
+                await(added);
+            }
+        }));
+        Thread loader = Thread.ofVirtual().start(filter::load);
+
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+        //пока фильтр не построен, он не отвечает "точно нет"
+        assertTrue(filter.mightContain("late@mail.ru"));
+        filter.add("late@mail.ru");
+        added.countDown();
+        loader.join(5000);
+
+        assertTrue(filter.mightContain("late@mail.ru"));
+        assertTrue(filter.mightContain("user999@mail.ru"));
+        assertFalse(filter.mightContain("never@mail.ru"));
+    }
+
+    @Test
+    @DisplayName("Email, добавленные во время перестроек, не должны теряться.")
+    void rebuild_ConcurrentAddsAreNotLost() throws Exception {
+        //email, закоммиченные писателями: перестройка, начатая после коммита, читает их из таблицы
+        List<String> addedEmails = new CopyOnWriteArrayList<>();
+        KnownEmailFilter filter = new KnownEmailFilter(OPTIONS,
+                () -> Stream.concat(table(2000), List.copyOf(addedEmails).stream()));
+        filter.load();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = IntStream.range(0, 4).mapToObj(writer -> Thread.ofPlatform().start(() -> {
+            for (int i = 0; running.get(); i++) {
+                String email = "writer" + writer + "_" + i + "@mail.ru";
+                addedEmails.add(email);
+                filter.add(email);
+            }
+        })).toList();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(filter.rebuild());
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join(5000);
+        }
+
+        assertFalse(addedEmails.isEmpty());
+        for (String email : addedEmails) {
+            assertTrue(filter.mightContain(email), email);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package services;
+
+import dao.FoundUsers;
+import dao.UserDAO;
+import models.User;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceCacheTest {
+
+    @Mock
+    private UserDAO userDAO;
+
+    private UserService userService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserService(userDAO, new InMemoryUserCache(100, Duration.ofMinutes(1)));
+        user = new User("Ivan", "ivan@mail.ru", 27);
+        user.setId(1L);
+    }
+
+    @Test
+    @DisplayName("Повторный поиск по id и email должен обслуживаться из кэша.")
+    void getUser_ReadsThroughCache() {
+        when(userDAO.findById(1L)).thenReturn(Optional.of(user));
+
+        userService.getUserById(1L);
+        userService.getUserById(1L);
+        Optional<User> byEmail = userService.getUserByEmail("ivan@mail.ru");
+
+        assertTrue(byEmail.isPresent());
+        verify(userDAO, times(1)).findById(1L);
+        verify(userDAO, never()).findByEmail(any());
+        assertEquals(2, userService.getCacheStats().getHits());
+    }
+
+    @Test
+    @DisplayName("Обновление и удаление должны инвалидировать кэш.")
+    void updateAndDelete_InvalidateCache() {
+        when(userDAO.findById(1L)).thenReturn(Optional.of(user));
+        userService.getUserById(1L);
+
+        userService.updateUser(user);
+        userService.getUserById(1L);
+        userService.deleteUser(1L);
+        userService.getUserById(1L);
+
+        verify(userDAO, times(3)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("После обновления чтение не должно возвращать устаревшие данные при конкурентных читателях.")
+    void concurrentReads_NoStaleReadAfterUpdate() throws Exception {
+        Map<Long, User> table = new ConcurrentHashMap<>();
+        table.put(1L, user.copy());
+        when(userDAO.findById(anyLong())).thenAnswer(invocation -> {
+            User stored = table.get(invocation.<Long>getArgument(0));
+            User snapshot = stored == null ? null : stored.copy();
+            //окно между чтением из БД и записью в кэш, в которое попадает писатель
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(200_000));
+            return Optional.ofNullable(snapshot);
+        });
+        doAnswer(invocation -> {
+            User updated = invocation.getArgument(0);
+            table.put(updated.getId(), updated.copy());
+            return true;
+        }).when(userDAO).update(any(User.class));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            readers.submit(() -> {
+                while (running.get()) {
+                    userService.getUserById(1L);
+                }
+            });
+        }
+
+        try {
+            for (int age = 1; age <= 200; age++) {
+                User update = user.copy();
+                update.setAge(age);
+                userService.updateUser(update);
+
+                assertEquals(age, userService.getUserById(1L).orElseThrow().getAge(),
+                        "устаревшее значение после обновления до " + age);
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+            assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Поиск по списку id должен запрашивать из БД только пользователей, которых нет в кэше.")
+    void getUsersByIds_LoadsOnlyUncached() {
+        User petr = new User("Petr", "petr@mail.ru", 30);
+        petr.setId(2L);
+        when(userDAO.findById(1L)).thenReturn(Optional.of(user));
+        when(userDAO.findAllById(List.of(2L, 3L))).thenReturn(new FoundUsers(List.of(petr), List.of(3L)));
+        userService.getUserById(1L);
+
+        FoundUsers result = userService.getUsersByIds(List.of(2L, 1L, 3L, 2L));
+
+        assertEquals(List.of(2L, 1L), result.users().stream().map(User::getId).toList());
+        assertEquals(List.of(3L), result.missingIds());
+        verify(userDAO, times(1)).findAllById(List.of(2L, 3L));
+
+        assertTrue(userService.getUsersByIds(List.of(1L, 2L)).allFound());
+        verify(userDAO, times(1)).findAllById(any());
+        verify(userDAO, times(1)).findById(1L);
+    }
+}
@@ -1,7 +1,15 @@
 package services;
 
+import dao.BatchResult;
+import dao.Page;
+import dao.PageRequest;
+import dao.UpsertResult;
 import dao.UserDAO;
+import jakarta.persistence.OptimisticLockException;
 import models.User;
+import models.UserFilter;
+import models.UserPatch;
+import models.UserSummary;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -9,9 +17,11 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -146,10 +156,45 @@ class UserServiceTest {
         verify(userDAO, times(1)).findAll();
     }
 
+    @DisplayName("Должен возвращать поток всех пользователей из БД.")
+    @Test
+    void streamAllUsers_Success() {
+        when(userDAO.streamAll()).thenReturn(Stream.of(user));
+
+        try (Stream<User> result = userService.streamAllUsers()) {
+            assertEquals(1, result.count());
+        }
+        verify(userDAO, times(1)).streamAll();
+    }
+
+    @DisplayName("Должен возвращать пустой поток при ошибке чтения пользователей из БД.")
+    @Test
+    void streamAllUsers_HandleException() {
+        when(userDAO.streamAll()).thenThrow(new RuntimeException("Ошибка БД."));
+
+        try (Stream<User> result = userService.streamAllUsers()) {
+            assertEquals(0, result.count());
+        }
+        verify(userDAO, times(1)).streamAll();
+    }
+
+    @DisplayName("Должен возвращать страницу пользователей после заданного id.")
+    @Test
+    void getUsersPage_Success() {
+        when(userDAO.findPage(0L, 10)).thenReturn(List.of(user));
+
+        List<User> result = userService.getUsersPage(0L, 10);
+
+        assertEquals(1, result.size());
+        verify(userDAO, times(1)).findPage(0L, 10);
+    }
+
     @DisplayName("Должен успешно сохранять пользователя в БД.")
     @Test
     void testSaveUser_Success() {
-        userService.saveUser(user);
+        when(userDAO.save(user)).thenReturn(true);
+
+        assertTrue(userService.saveUser(user));
 
         verify(userDAO, times(1)).save(user);
     }
@@ -158,11 +203,36 @@ class UserServiceTest {
     @Test
     void testSaveUser_HandleException() {
         doThrow(new RuntimeException("Ошибка БД.")).when(userDAO).save(any(User.class));
-        assertDoesNotThrow(() -> userService.saveUser(user));
+        assertFalse(assertDoesNotThrow(() -> userService.saveUser(user)));
 
         verify(userDAO, times(1)).save(user);
     }
 
+    @DisplayName("Должен пакетно сохранять пользователей в БД.")
+    @Test
+    void saveUsers_Success() {
+        List<User> users = List.of(user, new User("Oleg", "oleg@mail.ru", 28));
+        BatchResult batchResult = new BatchResult(2);
+        when(userDAO.saveAll(users)).thenReturn(batchResult);
+
+        BatchResult result = userService.saveUsers(users);
+
+        assertSame(batchResult, result);
+        verify(userDAO, times(1)).saveAll(users);
+    }
+
+    @DisplayName("Должен бросать исключение при попытке пакетного сохранения пользователей в БД.")
+    @Test
+    void saveUsers_HandleException() {
+        List<User> users = List.of(user);
+        when(userDAO.saveAll(users)).thenThrow(new RuntimeException("Ошибка БД."));
+
+        BatchResult result = userService.saveUsers(users);
+
+        assertNull(result);
+        verify(userDAO, times(1)).saveAll(users);
+    }
+
     @DisplayName("Должен успешно обновлять пользователя в БД.")
     @Test
     void updateUser_Success() {
@@ -185,16 +255,160 @@ class UserServiceTest {
     void deleteUser_Success() {
         userService.deleteUser(id);
 
-        verify(userDAO, times(1)).delete(id);
+        verify(userDAO, times(1)).deleteById(id);
     }
 
     @DisplayName("Должен бросать исключение при попытке удаления пользователя из БД.")
     @Test
     void deleteUser_HandleException() {
-        doThrow(new RuntimeException("Ошибка БД.")).when(userDAO).delete(anyLong());
+        when(userDAO.deleteById(anyLong())).thenThrow(new RuntimeException("Ошибка БД."));
         assertDoesNotThrow(() -> userService.deleteUser(id));
 
-        verify(userDAO, times(1)).delete(id);
+        verify(userDAO, times(1)).deleteById(id);
+    }
+
+    @DisplayName("Должен возвращать страницу результатов поиска.")
+    @Test
+    void searchUsers_Success() {
+        UserFilter filter = UserFilter.builder().minAge(18).build();
+        PageRequest request = PageRequest.first(10);
+        Page<User> page = new Page<>(List.of(user), null);
+        when(userDAO.search(filter, request)).thenReturn(page);
+
+        assertEquals(page, userService.searchUsers(filter, request));
+        verify(userDAO, never()).findAll();
+    }
+
+    @DisplayName("Должен возвращать проекции пользователей из БД.")
+    @Test
+    void getAllUserSummaries_Success() {
+        List<UserSummary> summaries = List.of(new UserSummary(id, "Иван", "ivan@mail.ru"));
+        when(userDAO.findAllSummaries()).thenReturn(summaries);
+
+        assertEquals(summaries, userService.getAllUserSummaries());
+        verify(userDAO, never()).findAll();
+    }
+
+    @DisplayName("Должен возвращать пустой Optional при ошибке получения проекции по email.")
+    @Test
+    void getUserSummaryByEmail_HandleException() {
+        when(userDAO.findSummaryByEmail(anyString())).thenThrow(new RuntimeException("Ошибка БД."));
+
+        assertTrue(userService.getUserSummaryByEmail("ivan@mail.ru").isEmpty());
+    }
+
+    @DisplayName("Должен перечитывать пользователя и повторять обновление при конфликте версий.")
+    @Test
+    void updateUserWithRetry_RetriesOnConflict() {
+        when(userDAO.findById(id)).thenAnswer(invocation -> Optional.of(user.copy()));
+        doThrow(new OptimisticLockException("Конфликт.")).doReturn(true).when(userDAO).update(any(User.class));
+
+        Optional<User> result = userService.updateUser(id, u -> u.setAge(40));
+
+        assertTrue(result.isPresent());
+        assertEquals(40, result.get().getAge());
+        assertEquals(1, userService.getUpdateConflictCount());
+        verify(userDAO, times(2)).findById(id);
+        verify(userDAO, times(2)).update(any(User.class));
+    }
+
+    @DisplayName("Должен возвращать пустой Optional, если запись не удалась не из-за конфликта версий.")
+    @Test
+    void updateUserWithRetry_WriteFailure() {
+        when(userDAO.findById(id)).thenAnswer(invocation -> Optional.of(user.copy()));
+        when(userDAO.update(any(User.class))).thenReturn(false);
+
+        assertTrue(userService.updateUser(id, u -> u.setName(null)).isEmpty());
+        assertEquals(0, userService.getUpdateConflictCount());
+        verify(userDAO, times(1)).update(any(User.class));
+    }
+
+    @DisplayName("Должен прекращать повторы после исчерпания попыток.")
+    @Test
+    void updateUserWithRetry_GivesUpAfterMaxAttempts() {
+        UserService service = new UserService(userDAO, null, UpdateRetryPolicy.builder()
+                .maxAttempts(3).initialBackoff(Duration.ZERO).build());
+        when(userDAO.findById(id)).thenAnswer(invocation -> Optional.of(user.copy()));
+        doThrow(new OptimisticLockException("Конфликт.")).when(userDAO).update(any(User.class));
+
+        assertTrue(service.updateUser(id, u -> u.setAge(40)).isEmpty());
+        verify(userDAO, times(3)).update(any(User.class));
+    }
+
+    @DisplayName("Должен передавать частичное обновление в DAO.")
+    @Test
+    void patchUser_Success() {
+        UserPatch patch = UserPatch.builder().name("Петр").build();
+        when(userDAO.patch(id, patch)).thenReturn(true);
+
+        assertTrue(userService.patchUser(id, patch));
+        verify(userDAO, times(1)).patch(id, patch);
+        verify(userDAO, never()).findById(anyLong());
+    }
+
+    @DisplayName("Должен возвращать false при ошибке частичного обновления.")
+    @Test
+    void patchUser_HandleException() {
+        when(userDAO.patch(anyLong(), any(UserPatch.class))).thenThrow(new RuntimeException("Ошибка БД."));
+
+        assertFalse(userService.patchUser(id, UserPatch.builder().age(30).build()));
+    }
+
+    @DisplayName("Фильтр email должен отвечать на отсутствующие email без обращения к БД.")
+    @Test
+    void existsByEmail_FilterSkipsDatabaseForMisses() {
+        when(userDAO.streamAllSummaries()).thenReturn(Stream.of(new UserSummary(id, "Иван", "ivan@mail.ru")));
+        when(userDAO.existsByEmail("ivan@mail.ru")).thenReturn(true);
+
+        BloomFilterStats stats = userService.enableEmailFilter(BloomFilterOptions.builder().expectedInsertions(1000).build());
+
+        assertEquals(1, stats.getInsertions());
+        assertTrue(userService.existsByEmail("ivan@mail.ru"));
+        assertFalse(userService.existsByEmail("nobody@mail.ru"));
+        verify(userDAO, never()).existsByEmail("nobody@mail.ru");
+        assertEquals(1, userService.getEmailFilterStats().getDefiniteMisses());
+    }
+
+    @DisplayName("Сохраненный email должен попадать в фильтр.")
+    @Test
+    void existsByEmail_FilterLearnsSavedEmails() {
+        when(userDAO.streamAllSummaries()).thenReturn(Stream.empty());
+        when(userDAO.existsByEmail("ivan@mail.ru")).thenReturn(true);
+        userService.enableEmailFilter(BloomFilterOptions.builder().expectedInsertions(1000).build());
+
+        assertFalse(userService.existsByEmail("ivan@mail.ru"));
+        userService.saveUser(user);
+
+        assertTrue(userService.existsByEmail("ivan@mail.ru"));
+        verify(userDAO, times(1)).existsByEmail("ivan@mail.ru");
+    }
+
+    @DisplayName("Должен возвращать итог upsert из DAO.")
+    @Test
+    void upsertUsers_Success() {
+        List<User> users = List.of(user);
+        when(userDAO.upsertAll(users)).thenReturn(new UpsertResult(1, 0));
+
+        assertEquals(new UpsertResult(1, 0), userService.upsertUsers(users));
+        verify(userDAO, never()).findByEmail(anyString());
+    }
+
+    @DisplayName("Должен пакетно удалять пользователей и возвращать их количество.")
+    @Test
+    void deleteUsers_Success() {
+        List<Long> ids = List.of(1L, 2L, 3L);
+        when(userDAO.deleteAll(ids)).thenReturn(2);
+
+        assertEquals(2, userService.deleteUsers(ids));
+        verify(userDAO, times(1)).deleteAll(ids);
+    }
+
+    @DisplayName("Должен возвращать 0 при ошибке пакетного удаления.")
+    @Test
+    void deleteUsers_HandleException() {
+        when(userDAO.deleteAll(anyCollection())).thenThrow(new RuntimeException("Ошибка БД."));
+
+        assertEquals(0, userService.deleteUsers(List.of(1L)));
     }
 
     @DisplayName("Должен успешно возвращать количество всех пользователей из БД.")
@@ -209,6 +423,71 @@ class UserServiceTest {
         verify(userDAO, times(1)).count();
     }
 
+    @DisplayName("Должен возвращать приблизительное количество пользователей в режиме APPROXIMATE.")
+    @Test
+    void getUsersCount_Approximate() {
+        when(userDAO.approximateCount()).thenReturn(1000L);
+
+        Long result = userService.getUsersCount(CountMode.APPROXIMATE);
+
+        assertEquals(1000L, result);
+        verify(userDAO, times(1)).approximateCount();
+        verify(userDAO, never()).count();
+    }
+
+    @DisplayName("Счетчик в памяти должен сдвигаться записями без повторного COUNT.")
+    @Test
+    void getUsersCount_CachedTracksWrites() {
+        when(userDAO.count()).thenReturn(10L);
+        when(userDAO.save(user)).thenReturn(true);
+        when(userDAO.deleteById(id)).thenReturn(true);
+        when(userDAO.deleteAll(List.of(2L, 3L))).thenReturn(2);
+        when(userDAO.upsertAll(anyCollection())).thenReturn(new UpsertResult(1, 0));
+
+        assertEquals(10L, userService.enableCountCache(Duration.ofHours(1)));
+        userService.saveUser(user);
+        userService.upsertUser(new User("Petr", "petr@mail.ru", 30));
+        userService.deleteUser(id);
+        userService.deleteUsers(List.of(2L, 3L));
+
+        assertEquals(9L, userService.getUsersCount());
+        verify(userDAO, times(1)).count();
+    }
+
+    @DisplayName("Счетчик в памяти не должен сдвигаться неудачными записями.")
+    @Test
+    void getUsersCount_CachedIgnoresFailedWrites() {
+        when(userDAO.count()).thenReturn(10L);
+        when(userDAO.save(user)).thenReturn(false);
+        when(userDAO.deleteById(id)).thenReturn(false);
+        when(userDAO.upsertAll(List.of(user))).thenReturn(null);
+
+        assertEquals(10L, userService.enableCountCache(Duration.ofHours(1)));
+        userService.saveUser(user);
+        userService.deleteUser(id);
+        assertNull(userService.upsertUsers(List.of(user)));
+
+        assertEquals(10L, userService.getUsersCount());
+        verify(userDAO, times(1)).count();
+    }
+
+    @DisplayName("Счетчик в памяти должен периодически сверяться с COUNT.")
+    @Test
+    void getUsersCount_CachedReconciles() throws InterruptedException {
+        when(userDAO.count()).thenReturn(10L, 15L);
+
+        assertEquals(10L, userService.enableCountCache(Duration.ZERO));
+        userService.saveUser(user);
+        userService.getUsersCount();
+
+        verify(userDAO, timeout(5000).atLeast(2)).count();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (userService.getUsersCount() != 15L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(15L, userService.getUsersCount());
+    }
+
     @DisplayName("Должен бросать исключение при попытке получения количества всех пользователей в БД.")
     @Test
     void getUsersCount_HandleException() {
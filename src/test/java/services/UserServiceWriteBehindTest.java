@@ -0,0 +1,228 @@
+package services;
+
+import dao.BatchResult;
+import dao.UserDAO;
+import models.User;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import utils.HibernateSessionFactoryUtil;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserServiceWriteBehindTest {
+
+    @Mock
+    private UserDAO userDAO;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        when(userDAO.updateAll(any())).thenAnswer(invocation -> {
+            Collection<User> users = invocation.getArgument(0);
+            BatchResult result = mock(BatchResult.class);
+            when(result.getRequested()).thenReturn(users.size());
+            when(result.getSucceeded()).thenReturn(users.size());
+            return result;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (userService != null) {
+            userService.close();
+        }
+    }
+
+    private UserService service(WriteBehindOptions options) {
+        userService = new UserService(userDAO, UserCache.disabled(), UpdateRetryPolicy.defaults(), options);
+        return userService;
+    }
+
+    private static User user(long id, String name, int age) {
+        User user = new User(name, "user" + id + "@mail.ru", age);
+        user.setId(id);
+        return user;
+    }
+
+    @Test
+    @DisplayName("Повторные обновления одного id должны сливаться и записываться одной пачкой.")
+    @SuppressWarnings("unchecked")
+    void flush_CoalescesUpdates() {
+        UserService service = service(WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build());
+
+        service.updateUser(user(1, "A", 20));
+        service.updateUser(user(1, "B", 21));
+        service.updateUser(user(2, "C", 30));
+        service.updateUser(user(1, "D", 22));
+
+        assertEquals(2, service.flush());
+
+        ArgumentCaptor<Collection<User>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(userDAO, times(1)).updateAll(batch.capture());
+        List<User> written = new ArrayList<>(batch.getValue());
+        assertEquals(List.of("D", "C"), written.stream().map(User::getName).toList());
+        assertEquals(2, service.getWriteBehindStats().getCoalesced());
+        verify(userDAO, never()).update(any());
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    @DisplayName("Чтение должно видеть еще не записанное обновление.")
+    void getUser_ReadsPendingUpdate() {
+        UserService service = service(WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build());
+
+        service.updateUser(user(1, "Pending", 20));
+
+        assertEquals("Pending", service.getUserById(1L).orElseThrow().getName());
+        assertEquals("Pending", service.getUserByEmail("user1@mail.ru").orElseThrow().getName());
+        verify(userDAO, never()).findById(any());
+        verify(userDAO, never()).findByEmail(any());
+    }
+
+    @Test
+    @DisplayName("Буфер должен записываться в фоне по достижении размера пачки.")
+    void submit_FlushesBySize() {
+        UserService service = service(WriteBehindOptions.builder().flushSize(2).flushInterval(Duration.ofMinutes(1)).build());
+
+        service.updateUser(user(1, "A", 20));
+        service.updateUser(user(2, "B", 20));
+
+        verify(userDAO, timeout(2000).times(1)).updateAll(any());
+    }
+
+    @Test
+    @DisplayName("Заполненный буфер должен отказывать после ожидания, а обновление того же id - проходить.")
+    void submit_BackpressureWhenFull() {
+        UserService service = service(WriteBehindOptions.builder().maxPending(1)
+                .offerTimeout(Duration.ofMillis(50)).flushInterval(Duration.ofMinutes(1)).build());
+
+        service.updateUser(user(1, "A", 20));
+        service.updateUser(user(1, "B", 20));
+
+        assertThrows(RejectedExecutionException.class, () -> service.updateUser(user(2, "C", 20)));
+        assertEquals(1, service.flush());
+        assertDoesNotThrow(() -> service.updateUser(user(2, "C", 20)));
+    }
+
+    @Test
+    @DisplayName("Удаление должно отбрасывать ожидающее обновление.")
+    void delete_DiscardsPendingUpdate() {
+        UserService service = service(WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build());
+
+        service.updateUser(user(1, "A", 20));
+        service.deleteUser(1L);
+
+        assertEquals(0, service.flush());
+        verify(userDAO, never()).updateAll(any());
+    }
+
+    @Test
+    @DisplayName("Незаписанные обновления должны возвращаться в очередь и отбрасываться после всех повторов.")
+    void flush_RequeuesFailedUpdates() {
+        //пачка с пользователем 1 всегда откатывается целиком
+        doAnswer(invocation -> {
+            List<User> users = new ArrayList<>(invocation.<Collection<User>>getArgument(0));
+            boolean poisoned = users.stream().anyMatch(user -> user.getId() == 1);
+            return new BatchResult(users.size()) {
+                @Override
+                public int getSucceeded() {
+                    return poisoned ? 0 : users.size();
+                }
+
+                @Override
+                public List<ChunkFailure> getFailures() {
+                    return poisoned ? List.of(new ChunkFailure(0, 0, users.size(), "Ошибка БД.", users, null)) : List.of();
+                }
+
+                @Override
+                public boolean hasFailures() {
+                    return poisoned;
+                }
+            };
+        }).when(userDAO).updateAll(any());
+        UserService service = service(WriteBehindOptions.builder().maxRetries(2)
+                .flushInterval(Duration.ofMinutes(1)).build());
+        service.updateUser(user(1, "Bad", 20));
+        service.updateUser(user(2, "Good", 20));
+
+        assertEquals(1, service.flush());
+        assertEquals("Bad", service.getUserById(1L).orElseThrow().getName());
+        assertEquals(1, service.getWriteBehindStats().getPending());
+
+        assertEquals(0, service.flush());
+        assertEquals(0, service.flush());
+
+        WriteBehindStats stats = service.getWriteBehindStats();
+        assertEquals(1, stats.getWritten());
+        assertEquals(2, stats.getRetried());
+        assertEquals(1, stats.getFailed());
+        assertEquals(0, stats.getPending());
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    @DisplayName("Обновление строки, измененной после чтения, должно отбрасываться без повторов.")
+    void flush_DropsConflicts() {
+        doAnswer(invocation -> {
+            List<User> users = new ArrayList<>(invocation.<Collection<User>>getArgument(0));
+            List<User> conflicts = users.stream().filter(user -> user.getId() == 1).toList();
+            return new BatchResult(users.size()) {
+                @Override
+                public int getSucceeded() {
+                    return users.size() - conflicts.size();
+                }
+
+                @Override
+                public List<User> getConflicts() {
+                    return conflicts;
+                }
+
+                @Override
+                public boolean hasConflicts() {
+                    return !conflicts.isEmpty();
+                }
+            };
+        }).when(userDAO).updateAll(any());
+        UserService service = service(WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build());
+        service.updateUser(user(1, "Stale", 20));
+        service.updateUser(user(2, "Fresh", 20));
+
+        assertEquals(1, service.flush());
+        assertEquals(0, service.flush());
+
+        WriteBehindStats stats = service.getWriteBehindStats();
+        assertEquals(1, stats.getWritten());
+        assertEquals(1, stats.getConflicts());
+        assertEquals(0, stats.getRetried());
+        assertEquals(0, stats.getPending());
+        verify(userDAO, times(1)).updateAll(any());
+    }
+
+    @Test
+    @DisplayName("Закрытие SessionFactory должно дописывать буфер.")
+    void shutdownSession_DrainsBuffer() {
+        UserService service = service(WriteBehindOptions.builder().flushInterval(Duration.ofMinutes(1)).build());
+        service.updateUser(user(1, "A", 20));
+
+        HibernateSessionFactoryUtil.shutdownSession();
+
+        verify(userDAO, times(1)).updateAll(any());
+        assertThrows(RejectedExecutionException.class, () -> service.updateUser(user(2, "B", 20)));
+    }
+}
@@ -0,0 +1,44 @@
+package utils;
+
+import models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+
+import java.util.Map;
+import java.util.Properties;
+
+//SessionFactory поверх H2 в памяти для тестов, которым не нужен Docker
+public final class EmbeddedDatabase {
+
+    private EmbeddedDatabase() {}
+
+    public static String jdbcUrl(String databaseName) {
+        return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+    }
+
+    public static SessionFactory sessionFactory(String databaseName) {
+        return sessionFactory(databaseName, Map.of());
+    }
+
+    public static SessionFactory sessionFactory(String databaseName, Map<String, Object> extraSettings) {
+        Configuration configuration = new Configuration();
+        Properties settings = new Properties();
+        settings.put(Environment.JAKARTA_JDBC_DRIVER, "org.h2.Driver");
+        settings.put(Environment.JAKARTA_JDBC_URL, jdbcUrl(databaseName));
+        settings.put(Environment.JAKARTA_JDBC_USER, "sa");
+        settings.put(Environment.JAKARTA_JDBC_PASSWORD, "");
+        settings.put(Environment.HBM2DDL_AUTO, "create-drop");
+        settings.put(Environment.CACHE_REGION_FACTORY, "jcache");
+        settings.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        settings.put("hibernate.javax.cache.uri", "ehcache.xml");
+        //пул из hibernate.cfg.xml: через него работает подсчет SQL (metrics.SqlTracker, @MaxStatements)
+        settings.put(Environment.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName());
+        settings.putAll(extraSettings);
+
+        configuration.setProperties(settings);
+        configuration.addAnnotatedClass(User.class);
+
+        return configuration.buildSessionFactory();
+    }
+}
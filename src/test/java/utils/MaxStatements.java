@@ -0,0 +1,17 @@
+package utils;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//тест падает, если его тело (без @BeforeEach) выполнило больше value SQL-запросов;
+//нужна фабрика с utils.PooledConnectionProvider, как у EmbeddedDatabase
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(SqlStatementGuard.class)
+public @interface MaxStatements {
+    int value();
+}
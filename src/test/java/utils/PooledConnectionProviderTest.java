@@ -0,0 +1,90 @@
+package utils;
+
+import dao.UserDAOImpl;
+import models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledConnectionProviderTest {
+    private static final int MAX_POOL_SIZE = 4;
+    private static final int THREADS = 32;
+    private static final int OPERATIONS_PER_THREAD = 25;
+
+    private static SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+
+    @BeforeAll
+    static void beforeAll() {
+        sessionFactory = EmbeddedDatabase.sessionFactory("pool", Map.of(
+                Environment.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName(),
+                PooledConnectionProvider.MIN_SIZE, "1",
+                PooledConnectionProvider.MAX_SIZE, String.valueOf(MAX_POOL_SIZE),
+                PooledConnectionProvider.LEAK_DETECTION_THRESHOLD, "10000"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new UserDAOImpl(sessionFactory);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Должен отдавать статистику пула для фабрики с PooledConnectionProvider.")
+    void getStats_Available() {
+        ConnectionPoolStats stats = HibernateSessionFactoryUtil.getConnectionPoolStats(sessionFactory);
+
+        assertNotNull(stats);
+        assertEquals(MAX_POOL_SIZE, stats.getMaxPoolSize());
+        assertEquals(0, stats.getActiveConnections());
+    }
+
+    @Test
+    @DisplayName("Должен обслуживать много потоков одновременно, не превышая размер пула.")
+    void concurrentLoad_Success() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        List<Integer> observedTotals = new CopyOnWriteArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    User user = new User("User" + thread, "user" + thread + "_" + i + "@mail.ru", 20 + i);
+                    userDAO.save(user);
+                    assertTrue(userDAO.findById(user.getId()).isPresent());
+                    observedTotals.add(HibernateSessionFactoryUtil.getConnectionPoolStats(sessionFactory).getTotalConnections());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        ConnectionPoolStats stats = HibernateSessionFactoryUtil.getConnectionPoolStats(sessionFactory);
+        assertEquals((long) THREADS * OPERATIONS_PER_THREAD, userDAO.count());
+        assertTrue(observedTotals.stream().allMatch(total -> total <= MAX_POOL_SIZE));
+        assertEquals(0, stats.getActiveConnections());
+        assertEquals(0, stats.getThreadsAwaitingConnection());
+        assertEquals(0, stats.getAcquireTimeoutCount());
+        assertTrue(stats.getAcquireCount() >= (long) THREADS * OPERATIONS_PER_THREAD);
+        assertTrue(stats.getAcquireP50Micros() <= stats.getAcquireP99Micros());
+        assertTrue(stats.getAcquireP99Micros() <= stats.getAcquireMaxMicros());
+    }
+}
@@ -0,0 +1,50 @@
+package utils;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.*;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplingStatementInspectorTest {
+    private final Logger logger = (Logger) LoggerFactory.getLogger(SamplingStatementInspector.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Должен логировать каждый N-й запрос и не менять SQL.")
+    void inspect_LogsEveryNth() {
+        SamplingStatementInspector inspector = new SamplingStatementInspector(3);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("select " + i, inspector.inspect("select " + i));
+        }
+
+        assertEquals(10, inspector.getStatementCount());
+        assertEquals(3, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().endsWith("select 2"));
+    }
+
+    @Test
+    @DisplayName("При частоте 0 не должен логировать запросы.")
+    void inspect_Disabled() {
+        SamplingStatementInspector inspector = new SamplingStatementInspector(0);
+
+        inspector.inspect("select 1");
+
+        assertTrue(appender.list.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new SamplingStatementInspector(-1));
+    }
+}
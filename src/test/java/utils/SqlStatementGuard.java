@@ -0,0 +1,54 @@
+package utils;
+
+import metrics.SqlScope;
+import metrics.SqlStats;
+import metrics.SqlTracker;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.opentest4j.AssertionFailedError;
+
+import java.util.function.Supplier;
+
+//Ограничение числа SQL-запросов: для всего теста через @MaxStatements или для одного вызова
+//через assertMaxStatements. Ловит N+1 и лишние запросы, которые добавила безобидная на вид правка DAO.
+public class SqlStatementGuard implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(SqlStatementGuard.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(context.getUniqueId(), SqlTracker.begin());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        SqlScope scope = context.getStore(NAMESPACE).remove(context.getUniqueId(), SqlScope.class);
+        scope.close();
+        MaxStatements limit = context.getRequiredTestMethod().getAnnotation(MaxStatements.class);
+        if (limit != null) {
+            check(limit.value(), scope.getStats(), context.getDisplayName());
+        }
+    }
+
+    public static <T> T assertMaxStatements(int max, Supplier<T> call) {
+        try (SqlScope scope = SqlTracker.begin()) {
+            T result = call.get();
+            check(max, scope.getStats(), "вызов");
+            return result;
+        }
+    }
+
+    public static void assertMaxStatements(int max, Runnable call) {
+        assertMaxStatements(max, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static void check(int max, SqlStats stats, String what) {
+        if (stats.getStatements() > max) {
+            throw new AssertionFailedError(what + ": выполнено " + stats.getStatements()
+                    + " SQL-запросов при допустимых " + max + " (" + stats + ")", max, stats.getStatements());
+        }
+    }
+}